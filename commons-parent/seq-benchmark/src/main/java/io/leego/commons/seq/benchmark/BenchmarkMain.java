@@ -0,0 +1,42 @@
+package io.leego.commons.seq.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, and writes the results
+ * to {@code jmh-result.json} unless {@code -rf} or {@code -rff} is specified, e.g.
+ * <pre>{@code
+ * mvn -pl commons-parent/seq-benchmark -am package
+ * java -jar commons-parent/seq-benchmark/target/benchmarks.jar CachedSeq -rff seq-1.0.0.json
+ * }</pre>
+ * The JSON results of different versions can be compared with tools such as JMH Visualizer.
+ *
+ * @author Leego Yih
+ */
+public class BenchmarkMain {
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldList()) {
+            new Runner(options).list();
+            return;
+        }
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!options.getResult().hasValue()) {
+            builder.result(RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
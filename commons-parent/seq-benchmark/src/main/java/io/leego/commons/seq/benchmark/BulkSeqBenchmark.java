@@ -0,0 +1,69 @@
+package io.leego.commons.seq.benchmark;
+
+import io.leego.commons.seq.client.CachedSeqClient;
+import io.leego.commons.seq.client.CachedSeqProperties;
+import io.leego.commons.seq.provider.MemorySeqProvider;
+import io.leego.commons.seq.provider.Segment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures obtaining sequences in bulk from {@link CachedSeqClient}.
+ *
+ * @author Leego Yih
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class BulkSeqBenchmark {
+    private static final String KEY = "benchmark";
+    @Param({"16", "256"})
+    public int size;
+    private CachedSeqClient client;
+
+    @Setup
+    public void setup() {
+        MemorySeqProvider provider = new MemorySeqProvider();
+        provider.create(KEY, 0, 1);
+        client = new CachedSeqClient(provider, new CachedSeqProperties(10000, 0.75F, Duration.ofSeconds(1), 0.5F));
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    public List<Long> next() {
+        return client.next(KEY, size);
+    }
+
+    @Benchmark
+    public long[] nextArray() {
+        return client.nextArray(KEY, size);
+    }
+
+    @Benchmark
+    public Segment nextSegment() {
+        return client.nextSegment(KEY, size);
+    }
+}
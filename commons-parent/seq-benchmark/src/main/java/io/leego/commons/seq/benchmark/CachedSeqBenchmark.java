@@ -0,0 +1,76 @@
+package io.leego.commons.seq.benchmark;
+
+import io.leego.commons.seq.client.CachedSeqClient;
+import io.leego.commons.seq.client.CachedSeqProperties;
+import io.leego.commons.seq.provider.MemorySeqProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput and the latency distribution of {@link CachedSeqClient#next(String)}
+ * with 1, 4 and all available threads.
+ *
+ * @author Leego Yih
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachedSeqBenchmark {
+    private static final String KEY = "benchmark";
+    @Param({"1000", "10000"})
+    public int capacity;
+    @Param({"0", "0.5"})
+    public float prefetch;
+    @Param({"0", "8"})
+    public int stripes;
+    private CachedSeqClient client;
+
+    @Setup
+    public void setup() {
+        MemorySeqProvider provider = new MemorySeqProvider();
+        provider.create(KEY, 0, 1);
+        CachedSeqProperties properties = new CachedSeqProperties(capacity, 0.75F, Duration.ofSeconds(1), prefetch);
+        properties.setStripes(stripes);
+        client = new CachedSeqClient(provider, properties);
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long next() {
+        return client.next(KEY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long next4Threads() {
+        return client.next(KEY);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long nextMaxThreads() {
+        return client.next(KEY);
+    }
+}
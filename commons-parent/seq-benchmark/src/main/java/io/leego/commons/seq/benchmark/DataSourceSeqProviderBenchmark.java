@@ -0,0 +1,91 @@
+package io.leego.commons.seq.benchmark;
+
+import io.leego.commons.seq.provider.DataSourceSeqProvider;
+import io.leego.commons.seq.provider.Segment;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures {@link DataSourceSeqProvider} against an embedded H2 database under contention.
+ * Each provider simulates a node, and the benchmark threads are spread over the nodes.
+ *
+ * @author Leego Yih
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DataSourceSeqProviderBenchmark {
+    private static final String KEY = "benchmark";
+    @Param({"OPTIMISTIC", "PESSIMISTIC"})
+    public DataSourceSeqProvider.Strategy strategy;
+    @Param({"1", "4"})
+    public int stripes;
+    @Param("4")
+    public int nodes;
+    @Param("1000")
+    public int size;
+    private final AtomicInteger counter = new AtomicInteger();
+    private JdbcDataSource dataSource;
+    private DataSourceSeqProvider[] providers;
+
+    @Setup
+    public void setup() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:seq_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        providers = new DataSourceSeqProvider[nodes];
+        for (int i = 0; i < nodes; i++) {
+            providers[i] = new DataSourceSeqProvider(dataSource, "seq", 100, strategy);
+            if (stripes > 1) {
+                // The first node creates the stripes, and the others discover them.
+                providers[i].createStriped(KEY, 0, 1, stripes);
+            } else {
+                providers[i].create(KEY, 0, 1);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("shutdown");
+        }
+    }
+
+    @Benchmark
+    public Segment next(Node node) {
+        return node.provider.next(KEY, size);
+    }
+
+    @State(Scope.Thread)
+    public static class Node {
+        private DataSourceSeqProvider provider;
+
+        @Setup
+        public void setup(DataSourceSeqProviderBenchmark benchmark) {
+            provider = benchmark.providers[benchmark.counter.getAndIncrement() % benchmark.providers.length];
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.leego.commons.seq.benchmark;
+
+import io.leego.commons.seq.provider.MemorySeqProvider;
+import io.leego.commons.seq.provider.Segment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MemorySeqProvider} under contention.
+ *
+ * @author Leego Yih
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemorySeqProviderBenchmark {
+    private static final String KEY = "benchmark";
+    private MemorySeqProvider provider;
+
+    @Setup
+    public void setup() {
+        provider = new MemorySeqProvider();
+        provider.create(KEY, 0, 1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Segment next() {
+        return provider.next(KEY, 100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Segment next4Threads() {
+        return provider.next(KEY, 100);
+    }
+}
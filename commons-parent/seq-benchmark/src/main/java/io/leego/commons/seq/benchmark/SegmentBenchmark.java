@@ -0,0 +1,57 @@
+package io.leego.commons.seq.benchmark;
+
+import io.leego.commons.seq.provider.Segment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures expanding a {@link Segment} into values.
+ *
+ * @author Leego Yih
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+    private Segment segment;
+
+    @Setup
+    public void setup() {
+        segment = new Segment(1, 2, size);
+    }
+
+    @Benchmark
+    public long[] toArray() {
+        return segment.toArray();
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (Long value : segment) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stream() {
+        return segment.stream().sum();
+    }
+}
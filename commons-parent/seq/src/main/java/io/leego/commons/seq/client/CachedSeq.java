@@ -3,68 +3,263 @@ package io.leego.commons.seq.client;
 import io.leego.commons.seq.exception.SeqErrorException;
 import io.leego.commons.seq.exception.SeqNotFoundException;
 import io.leego.commons.seq.exception.SeqTimeoutException;
+import io.leego.commons.seq.metrics.SeqListener;
+import io.leego.commons.seq.provider.Segment;
 import io.leego.commons.seq.provider.SeqProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
+ * A sequence that prefetches segments from a {@link SeqProvider}.
+ * <p>
+ * Prefetched segments are kept as a singly linked list of {@link Range}s, each
+ * consumed through an atomic cursor, so obtaining a sequence neither locks nor allocates.
+ * Only the thread holding the right to sync appends ranges, and consumers move the head forward
+ * once the current range is exhausted.
+ * <p>
+ * If {@code prefetch} is positive, the sequence works in double-buffered mode:
+ * segments of {@code capacity} are obtained, and the next one is fetched in the background
+ * as soon as the active one is consumed to {@code prefetch} of its size,
+ * so that the active segment is swapped with the standby one without waiting.
+ * <p>
+ * If {@code adaptive} is enabled, the consumption rate observed between two syncs is tracked,
+ * and the size of the next segment is adapted within {@code [minCapacity, maxCapacity]},
+ * so that the cache is synced roughly once every {@code refillInterval}.
+ * <p>
+ * If {@code stripes} is positive, the sequence works in striped mode: each thread is mapped to a stripe
+ * by the hash of its id, and takes sequences from a run of {@code stripeSize} sequences owned by the stripe,
+ * which is cut from the shared ranges once it runs out. Threads mapped to different stripes never write
+ * to the same cursor, but sequences are no longer handed out in order across stripes, and the sequences
+ * left in stripes are not counted by {@link #remaining()}.
+ * <p>
+ * The numbers of hits, misses, timeouts, refills and failed refills are counted,
+ * and the waits and refills are reported to the {@link SeqListener}.
+ * <p>
+ * Once the sequence is no longer used, {@link #release()} gives the unused sequences back to the provider.
+ * <p>
+ * {@link #nextAsync()} never blocks. If the cache is exhausted, the returned future is queued
+ * and completed by the thread which appends the next range, or completed exceptionally once the timeout elapses.
+ *
  * @author Leego Yih
  */
 public class CachedSeq implements Seq {
     private static final Logger logger = LoggerFactory.getLogger(CachedSeq.class);
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(
-            Runtime.getRuntime().availableProcessors() * 2,
-            new DefaultThreadFactory());
+    /** The smoothing factor of the consumption rate. */
+    private static final double RATE_ALPHA = 0.5;
+    /** The executor of the sequences created without one, which starts a virtual thread for each sync. */
+    private static final Executor DEFAULT_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("seq-syncing-", 0).factory());
     private final SeqProvider provider;
     private final String key;
+    /** The executor to sync in the background. */
+    private final Executor executor;
+    /** The scheduler which syncs sequences in batches, {@code null} means syncing with the executor. */
+    private final RefillScheduler scheduler;
     private final int capacity;
     private final int threshold;
     private final float loadFactor;
+    /** The consumption ratio of the active segment at which the next segment is fetched, {@code 0} means disabled. */
+    private final float prefetch;
     /** timeout in milliseconds */
     private final long timeout;
-    private final BlockingQueue<Long> queue;
-    private volatile boolean syncing;
+    private final boolean adaptive;
+    private final int minCapacity;
+    private final int maxCapacity;
+    /** refill interval in nanoseconds */
+    private final long refillInterval;
+    /** The size of the next segment to be obtained. */
+    private volatile int size;
+    /** The consumption rate in sequences per second. */
+    private volatile double rate;
+    /** The last time in nanoseconds when the cache was synced, guarded by {@code syncing}. */
+    private long lastSyncTime;
+    /** The number of sequences available after the last sync, guarded by {@code syncing}. */
+    private long lastAvailable;
+    /** The number of sequences available when the current sync began, guarded by {@code syncing}. */
+    private long syncRemaining;
+    /** The range being consumed. */
+    private final AtomicReference<Range> head;
+    /** The last appended range, only written while syncing. */
+    private volatile Range tail;
+    /** The monitor which consumers wait on until a range is appended. */
+    private final Object monitor = new Object();
+    /** The futures waiting until a range is appended. */
+    private final ConcurrentLinkedDeque<CompletableFuture<Long>> waiters = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    /** The runs owned by stripes, {@code null} if not striped. */
+    private final AtomicReferenceArray<Range> stripes;
+    private final int stripeSize;
+    /** The number of sequences obtained without waiting. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of sequences obtained after waiting. */
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder refillFailures = new LongAdder();
+    /** The time in nanoseconds when the current sync began, guarded by {@code syncing}. */
+    private long syncStartTime;
+    private volatile SeqListener listener = SeqListener.NOOP;
+    /** The number of obtained sequences when last checked by {@link #idle(long)}, guarded by the client. */
+    private long activeCount;
+    /** The time in nanoseconds when the number of obtained sequences last changed, guarded by the client. */
+    private long activeTime = System.nanoTime();
 
     public CachedSeq(SeqProvider provider, String key, int capacity, float loadFactor, long timeout) {
-        if (!provider.contains(key)) {
-            throw new SeqNotFoundException("Seq '" + key + "' cannot be found");
+        this(provider, key, capacity, loadFactor, timeout, 0F);
+    }
+
+    public CachedSeq(SeqProvider provider, String key, int capacity, float loadFactor, long timeout, float prefetch) {
+        this(provider, key, new CachedSeqProperties(capacity, loadFactor, Duration.ofMillis(timeout), prefetch));
+    }
+
+    public CachedSeq(SeqProvider provider, String key, CachedSeqProperties properties) {
+        this(provider, key, properties, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Creates a sequence which syncs with the given executor.
+     *
+     * @param provider   the provider.
+     * @param key        the key of the sequence.
+     * @param properties the properties.
+     * @param executor   the executor to sync in the background.
+     */
+    public CachedSeq(SeqProvider provider, String key, CachedSeqProperties properties, Executor executor) {
+        this(provider, requireExists(provider, key), properties, executor, null);
+    }
+
+    /**
+     * Creates a sequence which syncs through the scheduler if it is not {@code null}.
+     * The existence of the sequence is not checked, which should be checked by the caller.
+     */
+    CachedSeq(SeqProvider provider, String key, CachedSeqProperties properties, Executor executor, RefillScheduler scheduler) {
+        if (properties.getPrefetch() < 0 || properties.getPrefetch() > 1) {
+            throw new IllegalArgumentException("Invalid prefetch");
+        }
+        if (properties.isAdaptive()
+                && (properties.getMinCapacity() <= 0
+                || properties.getMinCapacity() > properties.getMaxCapacity()
+                || properties.getRefillInterval().isNegative()
+                || properties.getRefillInterval().isZero())) {
+            throw new IllegalArgumentException("Invalid adaptive properties");
+        }
+        if (properties.getStripes() < 0 || (properties.getStripes() > 0 && properties.getStripeSize() <= 0)) {
+            throw new IllegalArgumentException("Invalid stripes");
         }
+        requireFits(provider, properties);
         this.provider = provider;
         this.key = key;
-        this.capacity = capacity;
-        this.loadFactor = loadFactor;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.capacity = properties.getCapacity();
+        this.loadFactor = properties.getLoadFactor();
         this.threshold = (int) (capacity * loadFactor);
-        this.queue = new LinkedBlockingQueue<>();
-        this.timeout = timeout;
+        this.prefetch = properties.getPrefetch();
+        this.timeout = properties.getTimeout().toMillis();
+        this.adaptive = properties.isAdaptive();
+        this.minCapacity = properties.getMinCapacity();
+        this.maxCapacity = properties.getMaxCapacity();
+        this.refillInterval = properties.getRefillInterval().toNanos();
+        int size = prefetch > 0 ? capacity : threshold;
+        this.size = adaptive ? Math.max(minCapacity, Math.min(maxCapacity, size)) : size;
+        this.tail = new Range(0, 0, 0, 0);
+        this.head = new AtomicReference<>(tail);
+        if (properties.getStripes() > 0) {
+            // Rounds up to a power of two, so that the index is masked from the hash.
+            int n = Integer.highestOneBit(properties.getStripes() - 1) << 1;
+            this.stripes = new AtomicReferenceArray<>(Math.max(n, 1));
+            for (int i = 0; i < stripes.length(); i++) {
+                stripes.set(i, tail);
+            }
+        } else {
+            this.stripes = null;
+        }
+        this.stripeSize = properties.getStripeSize();
     }
 
     @Override
     public long next() {
-        try {
-            Long v = queue.poll();
-            if (v == null) {
-                trySync();
-                v = queue.poll(timeout, TimeUnit.MILLISECONDS);
+        if (stripes != null) {
+            return nextStriped();
+        }
+        long deadline = 0;
+        for (; ; ) {
+            Range r = head.get();
+            long i = r.cursor.getAndIncrement();
+            if (i < r.size) {
+                if (i == r.mark) {
+                    trySync();
+                }
+                record(deadline, 1);
+                return r.get(i);
+            }
+            Range n = r.next;
+            if (n != null) {
+                head.compareAndSet(r, n);
+                continue;
             }
-            if (v != null) {
-                return v;
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SeqErrorException(e);
+            // The appended range may have been exhausted by others, or claimed by release.
+            trySync();
+            await(r, deadline);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> nextAsync() {
+        for (; ; ) {
+            Range r = head.get();
+            long i = r.cursor.getAndIncrement();
+            if (i < r.size) {
+                if (i == r.mark) {
+                    trySync();
+                }
+                hits.increment();
+                return CompletableFuture.completedFuture(r.get(i));
+            }
+            Range n = r.next;
+            if (n != null) {
+                head.compareAndSet(r, n);
+                continue;
+            }
+            misses.increment();
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            waiters.addLast(future);
+            CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS).execute(() -> {
+                if (future.completeExceptionally(new SeqTimeoutException("Obtain \"" + key + "\" timeout"))) {
+                    // Otherwise the future stays queued until the next drain, which never happens while syncing fails.
+                    waiters.remove(future);
+                    timeouts.increment();
+                    listener.onTimeout(key);
+                }
+            });
+            // The range may have been appended before the future was queued.
+            if (r.next != null) {
+                drain();
+            } else {
+                trySync();
+            }
+            return future;
         }
-        throw new SeqTimeoutException("Obtain \"" + key + "\" timeout");
     }
 
     @Override
@@ -78,49 +273,342 @@ public class CachedSeq implements Seq {
             throw new IllegalArgumentException("Invalid size");
         }
         C c = collectionFactory.get();
-        try {
-            for (int i = 0; i < size; i++) {
-                Long v = queue.poll();
-                if (v == null) {
-                    trySync();
-                    v = queue.poll(timeout, TimeUnit.MILLISECONDS);
-                }
-                if (v != null) {
-                    c.add(v);
-                } else {
-                    break;
+        for (long v : nextArray(size)) {
+            c.add(v);
+        }
+        return c;
+    }
+
+    /**
+     * Obtains the next sequences, which are claimed from the cache in runs rather than one by one.
+     * If the size is not less than the size of segments, the sequences are obtained from the provider directly,
+     * in segments of at most {@link SeqProvider#getMaxSize()}, so that the cache is not drained, and they are counted as misses.
+     */
+    @Override
+    public long[] nextArray(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        if (size >= this.size) {
+            misses.add(size);
+            int maxSize = provider.getMaxSize();
+            if (size <= maxSize) {
+                return provider.next(key, size).toArray();
+            }
+            long[] array = new long[size];
+            for (int n = 0; n < size; ) {
+                Segment segment = provider.next(key, Math.min(maxSize, size - n));
+                System.arraycopy(segment.toArray(), 0, array, n, segment.getSize());
+                n += segment.getSize();
+            }
+            return array;
+        }
+        long[] array = new long[size];
+        int n = 0;
+        while (n < size) {
+            Range r = claim(size - n);
+            for (int j = 0; j < r.size; j++) {
+                array[n++] = r.get(j);
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public LongStream nextStream(int size) {
+        return LongStream.of(nextArray(size));
+    }
+
+    /**
+     * Obtains the next contiguous segment, which is claimed from a single range in one step.
+     * If no range has enough sequences left, or the size is not less than the size of segments,
+     * the segment is obtained from the provider directly, and its sequences are counted as misses.
+     *
+     * @throws IllegalArgumentException if the size exceeds {@link SeqProvider#getMaxSize()}, which a contiguous segment cannot span.
+     */
+    @Override
+    public Segment nextSegment(int size) {
+        if (size <= 0 || size > provider.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        if (size < this.size) {
+            for (Range r = head.get(); r != null; r = r.next) {
+                for (long i = r.cursor.get(); i + size <= r.size; i = r.cursor.get()) {
+                    if (r.cursor.compareAndSet(i, i + size)) {
+                        if (r.mark >= i && r.mark < i + size) {
+                            trySync();
+                        }
+                        hits.add(size);
+                        return new Segment(r.get(i), r.increment, size);
+                    }
                 }
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SeqErrorException(e);
+            trySync();
         }
-        if (c.size() == size) {
-            return c;
+        misses.add(size);
+        return provider.next(key, size);
+    }
+
+    /**
+     * Takes a sequence from the stripe of the current thread, and cuts another run once it runs out.
+     * The sequences are counted when the run is cut.
+     */
+    private long nextStriped() {
+        int index = mix(Thread.currentThread().threadId()) & (stripes.length() - 1);
+        for (; ; ) {
+            Range r = stripes.get(index);
+            long i = r.cursor.getAndIncrement();
+            if (i < r.size) {
+                return r.get(i);
+            }
+            // The rest of a run replaced by another thread mapped to the same stripe is skipped.
+            stripes.set(index, claim(stripeSize));
         }
-        throw new SeqTimeoutException("Obtain \"" + key + "\" timeout");
     }
 
-    public void trySync() {
-        if (!isSyncable()) return;
-        executorService.execute(() -> {
-            if (!isSyncable()) return;
-            synchronized (this) {
-                if (!isSyncable()) return;
-                try {
-                    syncing = true;
-                    provider.next(key, threshold).forEach(queue::offer);
-                } catch (Throwable t) {
-                    logger.error("", t);
-                } finally {
-                    syncing = false;
+    /**
+     * Claims a run of at most {@code count} sequences from the head range in one step,
+     * waiting until a range is appended if the cache is exhausted.
+     */
+    private Range claim(int count) {
+        long deadline = 0;
+        for (; ; ) {
+            Range r = head.get();
+            long i = r.cursor.getAndAdd(count);
+            if (i < r.size) {
+                int k = (int) Math.min(count, r.size - i);
+                if (r.mark >= i && r.mark < i + k) {
+                    trySync();
                 }
+                record(deadline, k);
+                return new Range(r.get(i), r.increment, k, -1);
+            }
+            Range next = r.next;
+            if (next != null) {
+                head.compareAndSet(r, next);
+                continue;
             }
-        });
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            }
+            trySync();
+            await(r, deadline);
+        }
+    }
+
+    public void trySync() {
+        if (!isSyncable()) return;
+        if (scheduler != null) {
+            scheduler.submit(this);
+            return;
+        }
+        try {
+            executor.execute(this::sync);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Could not sync seq '{}', the executor has been shut down", key);
+        }
     }
 
     public boolean isSyncable() {
-        return !syncing && queue.size() < threshold;
+        return !syncing.get() && needsSync();
+    }
+
+    /**
+     * Claims the right to sync this sequence, the caller must obtain a segment of the returned size
+     * and then call {@link #endSync(Segment, Throwable)} whether the segment is obtained or not.
+     *
+     * @return the size of the segment to be obtained, or {@code 0} if this sequence should not be synced.
+     */
+    int beginSync() {
+        if (!needsSync() || !syncing.compareAndSet(false, true)) {
+            return 0;
+        }
+        // The previous sync may have appended a range right before claiming.
+        if (!needsSync()) {
+            syncing.set(false);
+            return 0;
+        }
+        syncRemaining = remaining();
+        syncStartTime = System.nanoTime();
+        return nextSize(syncRemaining);
+    }
+
+    /**
+     * Appends the segment obtained after {@link #beginSync()} and releases the right to sync.
+     *
+     * @param segment the segment, or {@code null} if it could not be obtained.
+     * @param cause   the cause if the segment could not be obtained, may be {@code null}.
+     */
+    void endSync(Segment segment, Throwable cause) {
+        long elapsed = System.nanoTime() - syncStartTime;
+        try {
+            if (segment != null) {
+                append(segment);
+                lastAvailable = syncRemaining + segment.getSize();
+            } else {
+                lastAvailable = syncRemaining;
+            }
+        } finally {
+            syncing.set(false);
+        }
+        if (segment != null) {
+            refills.increment();
+            listener.onRefill(key, segment.getSize(), elapsed);
+            // The segment may have been exhausted by the waiting consumers, which could not trigger another sync while syncing.
+            trySync();
+        } else {
+            refillFailures.increment();
+            listener.onRefillFailure(key, cause);
+        }
+    }
+
+    private void sync() {
+        int size = beginSync();
+        if (size <= 0) return;
+        Segment segment = null;
+        Throwable cause = null;
+        try {
+            segment = provider.next(key, size);
+        } catch (Throwable t) {
+            cause = t;
+            logger.error("", t);
+        } finally {
+            endSync(segment, cause);
+        }
+    }
+
+    /**
+     * Claims the unused sequences of all ranges, and gives the contiguous run ending at the last range back
+     * to the provider, the others and the sequences in the stripes are discarded.
+     * The sequence can still be used afterwards, which syncs again.
+     * Nothing is given back while syncing, or if any segment has been obtained past the last range since.
+     *
+     * @return {@code true} if the unused sequences are given back.
+     */
+    public boolean release() {
+        if (syncing.get()) {
+            return false;
+        }
+        long value = 0;
+        long last = 0;
+        int increment = 0;
+        long count = 0;
+        for (Range r = head.get(); r != null; r = r.next) {
+            long i = r.cursor.getAndAdd(r.size);
+            if (i >= r.size) {
+                continue;
+            }
+            long start = r.get(i);
+            if (count > 0 && r.increment == increment && start == last + increment) {
+                count += r.size - i;
+            } else {
+                value = start;
+                increment = r.increment;
+                count = r.size - i;
+            }
+            last = r.get(r.size - 1);
+        }
+        // The futures queued meanwhile would never be completed without another sync.
+        if (!waiters.isEmpty()) {
+            trySync();
+        }
+        if (count == 0 || count > Integer.MAX_VALUE) {
+            return false;
+        }
+        try {
+            return provider.release(key, new Segment(value, increment, (int) count));
+        } catch (RuntimeException e) {
+            logger.warn("Could not release seq '{}'", key, e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the nanoseconds since a sequence was last obtained from the cache,
+     * which is observed by comparing the counts between calls, so that obtaining a sequence does not record the time.
+     */
+    long idle(long now) {
+        long count = hits.sum() + misses.sum();
+        if (count != activeCount) {
+            activeCount = count;
+            activeTime = now;
+        }
+        return now - activeTime;
+    }
+
+    private boolean needsSync() {
+        if (isPrefetchable()) {
+            // There is no standby segment once the last one has been consumed to its mark.
+            Range r = tail;
+            return r.cursor.get() >= r.mark;
+        }
+        return remaining() < size;
+    }
+
+    /**
+     * Returns {@code true} if this sequence works in double-buffered mode.
+     *
+     * @return {@code true} if this sequence works in double-buffered mode.
+     */
+    public boolean isPrefetchable() {
+        return prefetch > 0;
+    }
+
+    /**
+     * Returns the number of prefetched sequences that have not been obtained yet.
+     *
+     * @return the number of prefetched sequences.
+     */
+    public long remaining() {
+        long remaining = 0;
+        for (Range r = head.get(); r != null; r = r.next) {
+            remaining += r.remaining();
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the consumption rate in sequences per second observed between syncs.
+     *
+     * @return the consumption rate, or {@code 0} if it has not been observed yet.
+     */
+    public double getConsumptionRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the estimated time until the prefetched sequences are exhausted.
+     *
+     * @return the estimated time to depletion, or {@code null} if the consumption rate has not been observed yet.
+     */
+    public Duration getTimeToDepletion() {
+        double rate = this.rate;
+        if (rate <= 0) {
+            return null;
+        }
+        return Duration.ofNanos((long) (remaining() / rate * 1_000_000_000L));
+    }
+
+    /**
+     * Returns the estimated seconds until the prefetched sequences are exhausted,
+     * {@code 0} if they have been exhausted, or {@link Double#MAX_VALUE} if the consumption rate is unknown.
+     */
+    double depletion() {
+        long remaining = remaining();
+        if (remaining == 0) {
+            return 0;
+        }
+        double rate = this.rate;
+        return rate > 0 ? remaining / rate : Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns the size of the next segment to be obtained.
+     *
+     * @return the size of the next segment.
+     */
+    public int getSize() {
+        return size;
     }
 
     public String getKey() {
@@ -139,22 +627,236 @@ public class CachedSeq implements Seq {
         return loadFactor;
     }
 
+    public float getPrefetch() {
+        return prefetch;
+    }
+
     public long getTimeout() {
         return timeout;
     }
 
-    private static class DefaultThreadFactory implements ThreadFactory {
-        final AtomicLong threadNumber = new AtomicLong(0);
-        final ThreadGroup group = new ThreadGroup("seq");
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getMinCapacity() {
+        return minCapacity;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public Duration getRefillInterval() {
+        return Duration.ofNanos(refillInterval);
+    }
+
+    /**
+     * Returns the number of stripes.
+     *
+     * @return the number of stripes, or {@code 0} if not striped.
+     */
+    public int getStripes() {
+        return stripes != null ? stripes.length() : 0;
+    }
+
+    public int getStripeSize() {
+        return stripeSize;
+    }
+
+    /**
+     * Returns the number of sequences obtained from the cache without waiting, counted one per sequence by every method.
+     *
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of sequences obtained after waiting for the cache to be synced,
+     * or obtained from the provider directly bypassing the cache.
+     *
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getRefillCount() {
+        return refills.sum();
+    }
+
+    public long getRefillFailureCount() {
+        return refillFailures.sum();
+    }
+
+    public SeqListener getListener() {
+        return listener;
+    }
 
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(group, r, "seq-syncing-" + threadNumber.getAndIncrement());
-            thread.setDaemon(true);
-            if (thread.getPriority() != Thread.NORM_PRIORITY) {
-                thread.setPriority(Thread.NORM_PRIORITY);
+    public void setListener(SeqListener listener) {
+        this.listener = listener != null ? listener : SeqListener.NOOP;
+    }
+
+    /**
+     * Updates the consumption rate with the sequences consumed since the last sync,
+     * and returns the size of the segment to be obtained.
+     * In adaptive mode, the size is changed towards {@code rate * refillInterval},
+     * but at most doubled or halved each time to avoid oscillation.
+     */
+    private int nextSize(long remaining) {
+        long now = System.nanoTime();
+        if (lastSyncTime != 0) {
+            long elapsed = now - lastSyncTime;
+            long consumed = lastAvailable - remaining;
+            if (elapsed > 0 && consumed >= 0) {
+                double sample = consumed * 1_000_000_000D / elapsed;
+                rate = rate == 0 ? sample : rate + RATE_ALPHA * (sample - rate);
+            }
+        }
+        lastSyncTime = now;
+        if (adaptive && rate > 0) {
+            long current = size;
+            long target = (long) (rate * refillInterval / 1_000_000_000D);
+            target = Math.max(current >> 1, Math.min(current << 1, target));
+            size = (int) Math.max(minCapacity, Math.min(maxCapacity, target));
+        }
+        return size;
+    }
+
+    /** Counts the sequences as hits, or as misses and reports the wait if the deadline has been set. */
+    private void record(long deadline, int count) {
+        if (deadline == 0) {
+            hits.add(count);
+            return;
+        }
+        misses.add(count);
+        listener.onWait(key, System.nanoTime() - deadline + TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    /**
+     * Checks that the segments obtained by refills, up to {@code maxCapacity} in adaptive mode, never exceed the maximum size of the provider,
+     * otherwise every refill would fail.
+     */
+    static void requireFits(SeqProvider provider, CachedSeqProperties properties) {
+        int size = properties.getPrefetch() > 0 ? properties.getCapacity() : (int) (properties.getCapacity() * properties.getLoadFactor());
+        if (properties.isAdaptive()) {
+            size = properties.getMaxCapacity();
+        }
+        if (size > provider.getMaxSize()) {
+            throw new IllegalArgumentException("The size of segments %d exceeds the maximum size of the provider %d".formatted(size, provider.getMaxSize()));
+        }
+    }
+
+    static String requireExists(SeqProvider provider, String key) {
+        if (!provider.contains(key)) {
+            throw new SeqNotFoundException("Seq '" + key + "' cannot be found");
+        }
+        return key;
+    }
+
+    /** Spreads the bits of the thread id. */
+    private static int mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        return Long.hashCode(x ^ (x >>> 33));
+    }
+
+    /** Appends the segment to the tail and wakes up the waiting consumers. */
+    private void append(Segment segment) {
+        int size = segment.getSize();
+        long mark = isPrefetchable() ? Math.min(size - 1, (long) (size * prefetch)) : -1;
+        Range r = new Range(segment.getValue(), segment.getIncrement(), size, mark);
+        tail.next = r;
+        tail = r;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        drain();
+    }
+
+    /**
+     * Completes the waiting futures in order until the cache is exhausted.
+     * A sequence is skipped if its future has timed out in the meantime.
+     */
+    private void drain() {
+        for (CompletableFuture<Long> future; (future = waiters.pollFirst()) != null; ) {
+            if (future.isDone()) {
+                continue;
+            }
+            Range r = head.get();
+            long i = r.cursor.getAndIncrement();
+            if (i < r.size) {
+                if (i == r.mark) {
+                    trySync();
+                }
+                future.complete(r.get(i));
+                continue;
+            }
+            waiters.addFirst(future);
+            Range n = r.next;
+            if (n != null) {
+                head.compareAndSet(r, n);
+                continue;
             }
-            return thread;
+            // Checks again after the future is queued, in case the range is appended concurrently.
+            if (r.next == null) {
+                trySync();
+                return;
+            }
+        }
+    }
+
+    /** Waits until a range is appended after the given range, or throws if the deadline is reached. */
+    private void await(Range r, long deadline) {
+        synchronized (monitor) {
+            while (r.next == null) {
+                long nanos = deadline - System.nanoTime();
+                if (nanos <= 0) {
+                    timeouts.increment();
+                    listener.onTimeout(key);
+                    throw new SeqTimeoutException("Obtain \"" + key + "\" timeout");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(monitor, nanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SeqErrorException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of sequences, the {@code i}-th sequence is {@code value + increment * i}.
+     * The cursor may exceed the size, which means the range is exhausted.
+     * The next segment is fetched once the cursor passes the mark, {@code -1} means never.
+     */
+    private static final class Range {
+        final long value;
+        final int increment;
+        final int size;
+        final long mark;
+        final AtomicLong cursor = new AtomicLong();
+        volatile Range next;
+
+        Range(long value, int increment, int size, long mark) {
+            this.value = value;
+            this.increment = increment;
+            this.size = size;
+            this.mark = mark;
+        }
+
+        long get(long i) {
+            return value + increment * i;
+        }
+
+        long remaining() {
+            return Math.max(0, size - cursor.get());
         }
     }
 }
@@ -1,33 +1,159 @@
 package io.leego.commons.seq.client;
 
+import io.leego.commons.seq.exception.SeqNotFoundException;
+import io.leego.commons.seq.metrics.SeqListener;
+import io.leego.commons.seq.provider.Segment;
 import io.leego.commons.seq.provider.SeqProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
+ * A client whose sequences are cached by {@link CachedSeq}s, which sync with the executor of this client.
+ * By default, the executor starts a virtual thread for each sync, so that blocking providers do not
+ * occupy platform threads, and no thread pool is created per client.
+ * <p>
+ * If {@code refillBatchSize} is positive, the sequences are synced by a {@link RefillScheduler},
+ * which merges the pending syncs into batches, and syncs the ones closest to depletion first.
+ * <p>
+ * If {@code idleTimeout} is set, the sequences from which no sequence is obtained for that long are evicted periodically
+ * once the client is {@link #start() started}.
+ * If {@code maxSize} is positive, the sequences idle for the longest are evicted once more sequences are created,
+ * so the number of sequences may exceed it briefly. The unused tails of evicted sequences are given back to the provider.
+ * <p>
+ * The sequences of {@code warmUpKeys} are registered and prefetched when the client is {@link #start() started}, see {@link #warmUp(Collection)}.
+ * Other sequences are registered on first use, whose existence is checked outside the lock of the cache.
+ * <p>
+ * Closing the client rejects further syncs and waits for the in-flight ones to complete,
+ * gives the unused tails of the sequences back to the provider,
+ * then shuts down the executor if it is created by the client.
+ *
  * @author Leego Yih
  */
-public class CachedSeqClient implements SeqClient {
+public class CachedSeqClient implements SeqClient, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CachedSeqClient.class);
     private final SeqProvider provider;
     private final ConcurrentMap<String, CachedSeq> cache = new ConcurrentHashMap<>(32);
-    private final int capacity;
-    private final float loadFactor;
-    private final Duration timeout;
+    private final CachedSeqProperties properties;
+    private final Executor executor;
+    /** Whether the executor is supplied by the caller, which is not shut down on close. */
+    private final boolean shared;
+    /** The client itself is registered as a party, and each in-flight sync is registered until it completes. */
+    private final Phaser inflight = new Phaser(1);
+    /** The scheduler to sync in batches, {@code null} if disabled. */
+    private final RefillScheduler scheduler;
+    /** idle timeout in nanoseconds, {@code 0} means never */
+    private final long idleTimeout;
+    private final int maxSize;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile SeqListener listener = SeqListener.NOOP;
+    private volatile boolean closed;
 
     public CachedSeqClient(SeqProvider provider, int capacity) {
         this(provider, capacity, 0.75F, Duration.ofSeconds(1));
     }
 
     public CachedSeqClient(SeqProvider provider, int capacity, float loadFactor, Duration timeout) {
+        this(provider, capacity, loadFactor, timeout, 0F);
+    }
+
+    /**
+     * Creates a client whose sequences work in double-buffered mode if {@code prefetch} is positive.
+     *
+     * @param provider   the provider.
+     * @param capacity   the size of each segment.
+     * @param loadFactor the load factor.
+     * @param timeout    the timeout.
+     * @param prefetch   the consumption ratio of the active segment at which the next segment is fetched.
+     * @see CachedSeq
+     */
+    public CachedSeqClient(SeqProvider provider, int capacity, float loadFactor, Duration timeout, float prefetch) {
+        this(provider, new CachedSeqProperties(capacity, loadFactor, timeout, prefetch));
+    }
+
+    /**
+     * Creates a client whose sequences are created with the given properties.
+     *
+     * @param provider   the provider.
+     * @param properties the properties of sequences.
+     * @see CachedSeq
+     */
+    public CachedSeqClient(SeqProvider provider, CachedSeqProperties properties) {
+        this(provider, properties, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("seq-syncing-", 0).factory()), false);
+    }
+
+    /**
+     * Creates a client whose sequences sync with the given executor, which is not shut down on close.
+     *
+     * @param provider   the provider.
+     * @param properties the properties of sequences.
+     * @param executor   the executor to sync in the background.
+     * @see CachedSeq
+     */
+    public CachedSeqClient(SeqProvider provider, CachedSeqProperties properties, Executor executor) {
+        this(provider, properties, executor, true);
+    }
+
+    private CachedSeqClient(SeqProvider provider, CachedSeqProperties properties, Executor executor, boolean shared) {
         this.provider = provider;
-        this.capacity = capacity;
-        this.loadFactor = loadFactor;
-        this.timeout = timeout;
+        this.properties = properties;
+        this.executor = executor;
+        this.shared = shared;
+        this.scheduler = properties.getRefillBatchSize() > 0
+                ? new RefillScheduler(provider, this::execute, properties.getRefillBatchSize(), properties.getRefillParallelism())
+                : null;
+        this.idleTimeout = properties.getIdleTimeout() != null ? properties.getIdleTimeout().toNanos() : 0;
+        this.maxSize = properties.getMaxSize();
+        if (idleTimeout < 0 || maxSize < 0) {
+            throw new IllegalArgumentException("Invalid eviction properties");
+        }
+        CachedSeq.requireFits(provider, properties);
+    }
+
+    /**
+     * Starts this client, i.e. warms up the sequences of {@code warmUpKeys}, blocking until they are prefetched,
+     * and sweeps periodically if {@code idleTimeout} is set. Neither is done by the constructor,
+     * so that they never observe a partially constructed client. Calling it more than once has no effect.
+     *
+     * @return this client.
+     */
+    public CachedSeqClient start() {
+        if (closed) {
+            throw new IllegalStateException("The client has been closed");
+        }
+        if (!started.compareAndSet(false, true)) {
+            return this;
+        }
+        if (properties.getWarmUpKeys() != null && !properties.getWarmUpKeys().isEmpty()) {
+            warmUp(properties.getWarmUpKeys());
+        }
+        if (idleTimeout > 0) {
+            scheduleSweep();
+        }
+        return this;
     }
 
     @Override
@@ -35,6 +161,17 @@ public class CachedSeqClient implements SeqClient {
         return getSeq(key).next();
     }
 
+    @Override
+    public CompletableFuture<Long> nextAsync(String key) {
+        CachedSeq seq;
+        try {
+            seq = getSeq(key);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return seq.nextAsync();
+    }
+
     @Override
     public LinkedList<Long> next(String key, int size) {
         return getSeq(key).next(size);
@@ -45,8 +182,257 @@ public class CachedSeqClient implements SeqClient {
         return getSeq(key).next(size, collectionFactory);
     }
 
+    @Override
+    public long[] nextArray(String key, int size) {
+        return getSeq(key).nextArray(size);
+    }
+
+    @Override
+    public LongStream nextStream(String key, int size) {
+        return getSeq(key).nextStream(size);
+    }
+
+    @Override
+    public Segment nextSegment(String key, int size) {
+        return getSeq(key).nextSegment(size);
+    }
+
+    /**
+     * Syncs the sequences of the given keys which need to be synced
+     * with a single call to {@link SeqProvider#next(Map)}.
+     *
+     * @param keys the keys of the sequences.
+     */
+    public void sync(Collection<String> keys) {
+        Map<String, CachedSeq> seqs = new LinkedHashMap<>();
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (String key : keys) {
+            CachedSeq seq = getSeq(key);
+            int size = seq.beginSync();
+            if (size > 0) {
+                seqs.put(key, seq);
+                sizes.put(key, size);
+            }
+        }
+        if (sizes.isEmpty()) {
+            return;
+        }
+        Map<String, Segment> segments = null;
+        Throwable cause = null;
+        try {
+            segments = provider.next(sizes);
+        } catch (Throwable t) {
+            cause = t;
+            logger.error("", t);
+        } finally {
+            for (Map.Entry<String, CachedSeq> entry : seqs.entrySet()) {
+                entry.getValue().endSync(segments != null ? segments.get(entry.getKey()) : null, cause);
+            }
+        }
+    }
+
+    /**
+     * Registers the sequences of the given keys in parallel, then prefetches them with a single call to
+     * {@link SeqProvider#next(Map)}, so that the first requests neither check the existence nor wait for syncing.
+     * The keys of missing sequences are skipped.
+     *
+     * @param keys the keys of the sequences.
+     * @return the number of the sequences which are registered.
+     */
+    public int warmUp(Collection<String> keys) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    getSeq(key);
+                    return key;
+                } catch (SeqNotFoundException e) {
+                    logger.warn("Could not warm up seq '{}', the seq cannot be found", key);
+                    return null;
+                }
+            }, this::execute));
+        }
+        List<String> registered = new ArrayList<>(futures.size());
+        for (CompletableFuture<String> future : futures) {
+            String key;
+            try {
+                key = future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (key != null) {
+                registered.add(key);
+            }
+        }
+        sync(registered);
+        return registered.size();
+    }
+
+    /**
+     * Evicts the sequences idle for longer than {@code idleTimeout}, then the ones idle for the longest
+     * until at most {@code maxSize} sequences are left, and gives their unused tails back to the provider.
+     */
+    public void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            List<Candidate> candidates = new ArrayList<>(cache.size());
+            for (CachedSeq seq : cache.values()) {
+                long idle = seq.idle(now);
+                if (idleTimeout > 0 && idle >= idleTimeout) {
+                    evict(seq);
+                } else {
+                    candidates.add(new Candidate(seq, idle));
+                }
+            }
+            int excess = maxSize > 0 ? cache.size() - maxSize : 0;
+            if (excess > 0) {
+                candidates.sort(Comparator.comparingLong((Candidate c) -> c.idle).reversed());
+                for (int i = 0; i < excess && i < candidates.size(); i++) {
+                    evict(candidates.get(i).seq);
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Rejects further syncs, waits for the in-flight syncs to complete, gives the unused tails back,
+     * and shuts down the executor if it is created by this client.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inflight.arriveAndAwaitAdvance();
+        for (CachedSeq seq : cache.values()) {
+            seq.release();
+        }
+        if (!shared && executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public SeqListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener of the sequences, which is notified of the sequences created before and after.
+     *
+     * @param listener the listener.
+     */
+    public void setListener(SeqListener listener) {
+        SeqListener l = listener != null ? listener : SeqListener.NOOP;
+        this.listener = l;
+        for (CachedSeq seq : cache.values()) {
+            seq.setListener(l);
+            l.onCreate(seq);
+        }
+    }
+
+    /**
+     * Returns the sequences created so far.
+     *
+     * @return the sequences.
+     */
+    public Collection<CachedSeq> getSeqs() {
+        return Collections.unmodifiableCollection(cache.values());
+    }
+
     protected CachedSeq getSeq(String key) {
-        return cache.computeIfAbsent(key, k -> new CachedSeq(provider, key, capacity, loadFactor, timeout.toMillis()));
+        CachedSeq seq = cache.get(key);
+        if (seq != null) {
+            return seq;
+        }
+        // Checks the existence before locking the bin of the cache, which is a round trip for most providers.
+        CachedSeq.requireExists(provider, key);
+        boolean[] created = new boolean[1];
+        seq = cache.computeIfAbsent(key, k -> {
+            CachedSeq s = new CachedSeq(provider, key, properties, this::execute, scheduler);
+            s.setListener(listener);
+            created[0] = true;
+            return s;
+        });
+        if (created[0]) {
+            listener.onCreate(seq);
+            if (maxSize > 0 && cache.size() > maxSize && !sweeping.get()) {
+                try {
+                    execute(this::sweep);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Could not sweep, the client has been closed");
+                }
+            }
+        }
+        return seq;
+    }
+
+    private void evict(CachedSeq seq) {
+        if (cache.remove(seq.getKey(), seq)) {
+            // Notifies before releasing, so that the listener stops observing the sequence before it is drained.
+            listener.onEvict(seq);
+            seq.release();
+        }
+    }
+
+    /** Sweeps every half of the idle timeout until the client is closed. */
+    private void scheduleSweep() {
+        CompletableFuture.delayedExecutor(Math.max(idleTimeout >> 1, 1), TimeUnit.NANOSECONDS).execute(() -> {
+            try {
+                execute(() -> {
+                    try {
+                        sweep();
+                    } finally {
+                        scheduleSweep();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.debug("Stopped sweeping, the client has been closed");
+            }
+        });
+    }
+
+    /**
+     * Executes the sync and tracks it until it completes. The sync is registered before checking whether the client is closed,
+     * so that either closing waits for it, or it is rejected.
+     */
+    private void execute(Runnable task) {
+        inflight.register();
+        if (closed) {
+            inflight.arriveAndDeregister();
+            throw new RejectedExecutionException("The client has been closed");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inflight.arriveAndDeregister();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inflight.arriveAndDeregister();
+            throw e;
+        }
+    }
+
+    private static class Candidate {
+        final CachedSeq seq;
+        final long idle;
+
+        Candidate(CachedSeq seq, long idle) {
+            this.seq = seq;
+            this.idle = idle;
+        }
     }
 }
 
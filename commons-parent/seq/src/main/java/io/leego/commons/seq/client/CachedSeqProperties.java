@@ -0,0 +1,173 @@
+package io.leego.commons.seq.client;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The properties of {@link CachedSeq}.
+ *
+ * @author Leego Yih
+ */
+public class CachedSeqProperties {
+    /** The capacity of the cache. */
+    private int capacity = 1000;
+    /** The load factor, the cache is synced when it drops below {@code capacity * loadFactor}. */
+    private float loadFactor = 0.75F;
+    /** The timeout of waiting for the cache to be synced. */
+    private Duration timeout = Duration.ofSeconds(1);
+    /** The consumption ratio of the active segment at which the next segment is fetched, {@code 0} means disabled. */
+    private float prefetch = 0F;
+    /** Whether the size of segments is adapted to the consumption rate. */
+    private boolean adaptive = false;
+    /** The minimum size of segments in adaptive mode. */
+    private int minCapacity = 100;
+    /** The maximum size of segments in adaptive mode. */
+    private int maxCapacity = 100000;
+    /** The expected interval between two syncs in adaptive mode. */
+    private Duration refillInterval = Duration.ofSeconds(10);
+    /** The number of stripes, {@code 0} means disabled. */
+    private int stripes = 0;
+    /** The number of sequences cut from the shared segments for a stripe at a time. */
+    private int stripeSize = 64;
+    /** The maximum number of sequences synced in a batch by the client, {@code 0} means syncing them one by one. */
+    private int refillBatchSize = 0;
+    /** The maximum number of batches synced concurrently by the client. */
+    private int refillParallelism = 2;
+    /** The time after which a sequence is evicted from the client if no sequence is obtained, {@code null} means never. */
+    private Duration idleTimeout = null;
+    /** The maximum number of sequences kept by the client, {@code 0} means unbounded. */
+    private int maxSize = 0;
+    /** The keys of the sequences registered and prefetched when the client is started. */
+    private List<String> warmUpKeys = Collections.emptyList();
+
+    public CachedSeqProperties() {
+    }
+
+    public CachedSeqProperties(int capacity, float loadFactor, Duration timeout, float prefetch) {
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.timeout = timeout;
+        this.prefetch = prefetch;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public float getLoadFactor() {
+        return loadFactor;
+    }
+
+    public void setLoadFactor(float loadFactor) {
+        this.loadFactor = loadFactor;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public float getPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(float prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public int getMinCapacity() {
+        return minCapacity;
+    }
+
+    public void setMinCapacity(int minCapacity) {
+        this.minCapacity = minCapacity;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public void setMaxCapacity(int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+    }
+
+    public Duration getRefillInterval() {
+        return refillInterval;
+    }
+
+    public void setRefillInterval(Duration refillInterval) {
+        this.refillInterval = refillInterval;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getStripeSize() {
+        return stripeSize;
+    }
+
+    public void setStripeSize(int stripeSize) {
+        this.stripeSize = stripeSize;
+    }
+
+    public int getRefillBatchSize() {
+        return refillBatchSize;
+    }
+
+    public void setRefillBatchSize(int refillBatchSize) {
+        this.refillBatchSize = refillBatchSize;
+    }
+
+    public int getRefillParallelism() {
+        return refillParallelism;
+    }
+
+    public void setRefillParallelism(int refillParallelism) {
+        this.refillParallelism = refillParallelism;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public List<String> getWarmUpKeys() {
+        return warmUpKeys;
+    }
+
+    public void setWarmUpKeys(List<String> warmUpKeys) {
+        this.warmUpKeys = warmUpKeys;
+    }
+}
@@ -0,0 +1,152 @@
+package io.leego.commons.seq.client;
+
+import io.leego.commons.seq.provider.Segment;
+import io.leego.commons.seq.provider.SeqProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Syncs the sequences of a {@link CachedSeqClient} in batches.
+ * <p>
+ * Sequences that need to be synced are collected until a worker is available, then the most urgent ones,
+ * i.e. those with the shortest estimated time to depletion, are synced with a single call to
+ * {@link SeqProvider#next(Map)}, so that the exhausted sequences never wait behind the half full ones.
+ *
+ * @author Leego Yih
+ */
+final class RefillScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(RefillScheduler.class);
+    private final SeqProvider provider;
+    private final Executor executor;
+    /** The maximum number of sequences synced in a batch. */
+    private final int batchSize;
+    /** The maximum number of batches synced concurrently. */
+    private final int parallelism;
+    private final Set<CachedSeq> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workers = new AtomicInteger();
+
+    RefillScheduler(SeqProvider provider, Executor executor, int batchSize, int parallelism) {
+        if (batchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.provider = provider;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Submits the sequence to be synced in the next batch.
+     *
+     * @param seq the sequence.
+     */
+    void submit(CachedSeq seq) {
+        if (pending.add(seq)) {
+            schedule();
+        }
+    }
+
+    /** Starts a worker if the parallelism allows. */
+    private void schedule() {
+        for (; ; ) {
+            int n = workers.get();
+            if (n >= parallelism) {
+                return;
+            }
+            if (workers.compareAndSet(n, n + 1)) {
+                break;
+            }
+        }
+        try {
+            executor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            workers.decrementAndGet();
+            logger.debug("Could not sync {} seqs, the executor has been shut down", pending.size());
+        }
+    }
+
+    private void run() {
+        try {
+            List<CachedSeq> batch;
+            while (!(batch = poll()).isEmpty()) {
+                sync(batch);
+            }
+        } finally {
+            workers.decrementAndGet();
+        }
+        // A sequence may have been submitted after the last poll but before the worker is released.
+        if (!pending.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /** Removes and returns the most urgent sequences. */
+    private List<CachedSeq> poll() {
+        List<Candidate> candidates = new ArrayList<>(pending.size());
+        for (CachedSeq seq : pending) {
+            candidates.add(new Candidate(seq, seq.depletion()));
+        }
+        if (candidates.size() > batchSize) {
+            candidates.sort(Comparator.comparingDouble(c -> c.depletion));
+        }
+        List<CachedSeq> batch = new ArrayList<>(Math.min(batchSize, candidates.size()));
+        for (Candidate candidate : candidates) {
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            // The sequence may have been polled by another worker.
+            if (pending.remove(candidate.seq)) {
+                batch.add(candidate.seq);
+            }
+        }
+        return batch;
+    }
+
+    private void sync(List<CachedSeq> batch) {
+        Map<String, CachedSeq> seqs = new LinkedHashMap<>((int) (batch.size() / 0.75F) + 1);
+        Map<String, Integer> sizes = new LinkedHashMap<>((int) (batch.size() / 0.75F) + 1);
+        for (CachedSeq seq : batch) {
+            int size = seq.beginSync();
+            if (size > 0) {
+                seqs.put(seq.getKey(), seq);
+                sizes.put(seq.getKey(), size);
+            }
+        }
+        if (sizes.isEmpty()) {
+            return;
+        }
+        Map<String, Segment> segments = null;
+        Throwable cause = null;
+        try {
+            segments = provider.next(sizes);
+        } catch (Throwable t) {
+            cause = t;
+            logger.error("", t);
+        } finally {
+            for (Map.Entry<String, CachedSeq> entry : seqs.entrySet()) {
+                entry.getValue().endSync(segments != null ? segments.get(entry.getKey()) : null, cause);
+            }
+        }
+    }
+
+    private static class Candidate {
+        final CachedSeq seq;
+        final double depletion;
+
+        Candidate(CachedSeq seq, double depletion) {
+            this.seq = seq;
+            this.depletion = depletion;
+        }
+    }
+}
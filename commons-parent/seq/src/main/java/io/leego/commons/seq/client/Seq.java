@@ -1,8 +1,12 @@
 package io.leego.commons.seq.client;
 
+import io.leego.commons.seq.provider.Segment;
+
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
  * @author Leego Yih
@@ -16,6 +20,17 @@ public interface Seq {
      */
     long next();
 
+    /**
+     * Obtains the next sequence without blocking the calling thread.
+     * <p>
+     * The default implementation calls {@link #next()} on a new virtual thread.
+     *
+     * @return a future completed with the next sequence.
+     */
+    default CompletableFuture<Long> nextAsync() {
+        return CompletableFuture.supplyAsync(this::next, Thread::startVirtualThread);
+    }
+
     /**
      * Obtains the next segment of the sequence.
      *
@@ -34,4 +49,41 @@ public interface Seq {
      */
     <C extends Collection<Long>> C next(int size, Supplier<C> collectionFactory);
 
+    /**
+     * Obtains the next sequences as an array without boxing.
+     * <p>
+     * The default implementation unboxes the sequences obtained by {@link #next(int)}.
+     *
+     * @param size the size.
+     * @return the next sequences.
+     */
+    default long[] nextArray(int size) {
+        return next(size).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Obtains the next sequences as a stream without boxing.
+     * <p>
+     * The default implementation streams the sequences obtained by {@link #nextArray(int)}.
+     *
+     * @param size the size.
+     * @return the next sequences.
+     */
+    default LongStream nextStream(int size) {
+        return LongStream.of(nextArray(size));
+    }
+
+    /**
+     * Obtains the next contiguous segment of the sequence.
+     * <p>
+     * The default implementation obtains the sequences by {@link #nextArray(int)}, which must be contiguous.
+     *
+     * @param size the size.
+     * @return the next segment of the sequence.
+     * @throws IllegalArgumentException if the size is not positive, or the obtained sequences are not contiguous.
+     */
+    default Segment nextSegment(int size) {
+        return Segment.of(nextArray(size));
+    }
+
 }
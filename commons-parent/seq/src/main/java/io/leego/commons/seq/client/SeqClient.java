@@ -1,8 +1,12 @@
 package io.leego.commons.seq.client;
 
+import io.leego.commons.seq.provider.Segment;
+
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
  * @author Leego Yih
@@ -17,6 +21,18 @@ public interface SeqClient {
      */
     long next(String key);
 
+    /**
+     * Obtains the next sequence without blocking the calling thread.
+     * <p>
+     * The default implementation calls {@link #next(String)} on a new virtual thread.
+     *
+     * @param key the sequence key.
+     * @return a future completed with the next sequence.
+     */
+    default CompletableFuture<Long> nextAsync(String key) {
+        return CompletableFuture.supplyAsync(() -> next(key), Thread::startVirtualThread);
+    }
+
     /**
      * Obtains the next segment of the sequence.
      *
@@ -37,4 +53,44 @@ public interface SeqClient {
      */
     <C extends Collection<Long>> C next(String key, int size, Supplier<C> collectionFactory);
 
+    /**
+     * Obtains the next sequences as an array without boxing.
+     * <p>
+     * The default implementation unboxes the sequences obtained by {@link #next(String, int)}.
+     *
+     * @param key  the sequence key.
+     * @param size the size.
+     * @return the next sequences.
+     */
+    default long[] nextArray(String key, int size) {
+        return next(key, size).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Obtains the next sequences as a stream without boxing.
+     * <p>
+     * The default implementation streams the sequences obtained by {@link #nextArray(String, int)}.
+     *
+     * @param key  the sequence key.
+     * @param size the size.
+     * @return the next sequences.
+     */
+    default LongStream nextStream(String key, int size) {
+        return LongStream.of(nextArray(key, size));
+    }
+
+    /**
+     * Obtains the next contiguous segment of the sequence.
+     * <p>
+     * The default implementation obtains the sequences by {@link #nextArray(String, int)}, which must be contiguous.
+     *
+     * @param key  the sequence key.
+     * @param size the size.
+     * @return the next segment of the sequence.
+     * @throws IllegalArgumentException if the size is not positive, or the obtained sequences are not contiguous.
+     */
+    default Segment nextSegment(String key, int size) {
+        return Segment.of(nextArray(key, size));
+    }
+
 }
@@ -1,19 +1,39 @@
 package io.leego.commons.seq.client;
 
+import io.leego.commons.seq.provider.Segment;
 import io.leego.commons.seq.provider.SeqProvider;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
  * @author Leego Yih
  */
 public class SimpleSeqClient implements SeqClient {
+    /** The executor of the clients created without one, which starts a virtual thread for each call. */
+    private static final Executor DEFAULT_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("seq-async-", 0).factory());
     private final SeqProvider provider;
+    private final Executor executor;
 
     public SimpleSeqClient(SeqProvider provider) {
+        this(provider, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Creates a client which obtains sequences asynchronously with the given executor.
+     *
+     * @param provider the provider.
+     * @param executor the executor to call the provider in {@link #nextAsync(String)}.
+     */
+    public SimpleSeqClient(SeqProvider provider, Executor executor) {
         this.provider = provider;
+        this.executor = executor;
     }
 
     @Override
@@ -21,6 +41,11 @@ public class SimpleSeqClient implements SeqClient {
         return provider.next(key);
     }
 
+    @Override
+    public CompletableFuture<Long> nextAsync(String key) {
+        return CompletableFuture.supplyAsync(() -> provider.next(key), executor);
+    }
+
     @Override
     public LinkedList<Long> next(String key, int size) {
         return provider.next(key, size).toCollection(LinkedList::new);
@@ -30,4 +55,19 @@ public class SimpleSeqClient implements SeqClient {
     public <C extends Collection<Long>> C next(String key, int size, Supplier<C> collectionFactory) {
         return provider.next(key, size).toCollection(collectionFactory);
     }
+
+    @Override
+    public long[] nextArray(String key, int size) {
+        return provider.next(key, size).toArray();
+    }
+
+    @Override
+    public LongStream nextStream(String key, int size) {
+        return provider.next(key, size).stream();
+    }
+
+    @Override
+    public Segment nextSegment(String key, int size) {
+        return provider.next(key, size);
+    }
 }
@@ -0,0 +1,76 @@
+package io.leego.commons.seq.metrics;
+
+import io.leego.commons.seq.client.CachedSeq;
+
+/**
+ * A listener notified of the events of sequences, all methods do nothing by default.
+ * <p>
+ * Listeners are called on the threads obtaining and syncing sequences,
+ * so they should return quickly and never throw.
+ *
+ * @author Leego Yih
+ */
+public interface SeqListener {
+    /** A listener that does nothing. */
+    SeqListener NOOP = new SeqListener() {};
+
+    /**
+     * Called when a cached sequence is created by a client, or when the listener is set on the client.
+     *
+     * @param seq the sequence.
+     */
+    default void onCreate(CachedSeq seq) {
+    }
+
+    /**
+     * Called when a cached sequence is evicted from a client.
+     *
+     * @param seq the sequence.
+     */
+    default void onEvict(CachedSeq seq) {
+    }
+
+    /**
+     * Called when a sequence is obtained after waiting for the cache to be synced.
+     *
+     * @param key   the key.
+     * @param nanos the wait time in nanoseconds.
+     */
+    default void onWait(String key, long nanos) {
+    }
+
+    /**
+     * Called when obtaining a sequence times out.
+     *
+     * @param key the key.
+     */
+    default void onTimeout(String key) {
+    }
+
+    /**
+     * Called when the cache is refilled.
+     *
+     * @param key   the key.
+     * @param size  the size of the obtained segment.
+     * @param nanos the latency of the refill in nanoseconds.
+     */
+    default void onRefill(String key, int size, long nanos) {
+    }
+
+    /**
+     * Called when the cache could not be refilled.
+     *
+     * @param key   the key.
+     * @param cause the cause, may be {@code null}.
+     */
+    default void onRefillFailure(String key, Throwable cause) {
+    }
+
+    /**
+     * Called when the provider retries to modify a sequence because of a conflict or a transient error.
+     *
+     * @param key the key.
+     */
+    default void onRetry(String key) {
+    }
+}
@@ -0,0 +1,191 @@
+package io.leego.commons.seq.metrics;
+
+import io.leego.commons.seq.client.CachedSeq;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the metrics of sequences to a {@link MeterRegistry}, tagged by key.
+ * The binder should be set as the listener of clients and providers, e.g.
+ * <pre>{@code
+ * SeqMeterBinder binder = new SeqMeterBinder();
+ * binder.bindTo(registry);
+ * client.setListener(binder);
+ * provider.setListener(binder);
+ * }</pre>
+ * <table>
+ *     <tr><th>Name</th><th>Type</th><th>Description</th></tr>
+ *     <tr><td>seq.cache.depth</td><td>gauge</td><td>The number of cached sequences.</td></tr>
+ *     <tr><td>seq.cache.hits</td><td>counter</td><td>The number of sequences obtained without waiting.</td></tr>
+ *     <tr><td>seq.cache.misses</td><td>counter</td><td>The number of sequences obtained after waiting, or bypassing the cache.</td></tr>
+ *     <tr><td>seq.cache.timeouts</td><td>counter</td><td>The number of timeouts.</td></tr>
+ *     <tr><td>seq.cache.wait</td><td>timer</td><td>The wait time of misses.</td></tr>
+ *     <tr><td>seq.refill.latency</td><td>timer</td><td>The latency of refills.</td></tr>
+ *     <tr><td>seq.refill.size</td><td>summary</td><td>The size of refills.</td></tr>
+ *     <tr><td>seq.refill.failures</td><td>counter</td><td>The number of failed refills.</td></tr>
+ *     <tr><td>seq.provider.retries</td><td>counter</td><td>The number of retries of the provider.</td></tr>
+ * </table>
+ *
+ * @author Leego Yih
+ */
+public class SeqMeterBinder implements MeterBinder, SeqListener {
+    private static final String TAG_KEY = "key";
+    /** The sequences created before binding. */
+    private final List<CachedSeq> seqs = new CopyOnWriteArrayList<>();
+    /** The meters of the sequences, registered once and removed on eviction. */
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (CachedSeq seq : seqs) {
+            bind(registry, seq);
+        }
+        seqs.clear();
+    }
+
+    @Override
+    public void onCreate(CachedSeq seq) {
+        MeterRegistry registry = this.registry;
+        if (registry != null) {
+            bind(registry, seq);
+        } else {
+            seqs.add(seq);
+        }
+    }
+
+    /**
+     * Removes the meters of the evicted sequence, so that the meters of transient keys do not pile up.
+     * The meters are left alone if they have been taken over by a sequence of the same key created afterwards.
+     */
+    @Override
+    public void onEvict(CachedSeq seq) {
+        seqs.remove(seq);
+        meters.computeIfPresent(seq.getKey(), (k, m) -> {
+            if (m.seq != seq) {
+                return m;
+            }
+            m.remove();
+            return null;
+        });
+    }
+
+    @Override
+    public void onWait(String key, long nanos) {
+        Meters m = meters.get(key);
+        if (m != null) {
+            m.wait.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onRefill(String key, int size, long nanos) {
+        Meters m = meters.get(key);
+        if (m != null) {
+            m.refillLatency.record(nanos, TimeUnit.NANOSECONDS);
+            m.refillSize.record(size);
+        }
+    }
+
+    @Override
+    public void onRetry(String key) {
+        Meters m = meters.get(key);
+        if (m != null) {
+            m.retries.increment();
+            return;
+        }
+        // The provider may be used without a client, whose keys have no cached sequences.
+        MeterRegistry registry = this.registry;
+        if (registry != null) {
+            retries(registry, key).increment();
+        }
+    }
+
+    private void bind(MeterRegistry registry, CachedSeq seq) {
+        meters.compute(seq.getKey(), (k, m) -> {
+            // The sequence of the same key evicted before, whose gauges would otherwise keep observing it.
+            if (m != null) {
+                m.remove();
+            }
+            return new Meters(registry, seq);
+        });
+    }
+
+    private static Counter retries(MeterRegistry registry, String key) {
+        return Counter.builder("seq.provider.retries")
+                .description("The number of retries of the provider")
+                .tag(TAG_KEY, key)
+                .register(registry);
+    }
+
+    /** The meters of a sequence. */
+    private static final class Meters {
+        final MeterRegistry registry;
+        final CachedSeq seq;
+        final Timer wait;
+        final Timer refillLatency;
+        final DistributionSummary refillSize;
+        final Counter retries;
+        final List<Meter> all;
+
+        Meters(MeterRegistry registry, CachedSeq seq) {
+            String key = seq.getKey();
+            this.registry = registry;
+            this.seq = seq;
+            this.wait = Timer.builder("seq.cache.wait")
+                    .description("The wait time of misses")
+                    .tag(TAG_KEY, key)
+                    .register(registry);
+            this.refillLatency = Timer.builder("seq.refill.latency")
+                    .description("The latency of refills")
+                    .tag(TAG_KEY, key)
+                    .register(registry);
+            this.refillSize = DistributionSummary.builder("seq.refill.size")
+                    .description("The size of refills")
+                    .tag(TAG_KEY, key)
+                    .register(registry);
+            this.retries = retries(registry, key);
+            this.all = List.of(
+                    wait, refillLatency, refillSize, retries,
+                    Gauge.builder("seq.cache.depth", seq, CachedSeq::remaining)
+                            .description("The number of cached sequences")
+                            .tag(TAG_KEY, key)
+                            .register(registry),
+                    FunctionCounter.builder("seq.cache.hits", seq, CachedSeq::getHitCount)
+                            .description("The number of sequences obtained without waiting")
+                            .tag(TAG_KEY, key)
+                            .register(registry),
+                    FunctionCounter.builder("seq.cache.misses", seq, CachedSeq::getMissCount)
+                            .description("The number of sequences obtained after waiting, or bypassing the cache")
+                            .tag(TAG_KEY, key)
+                            .register(registry),
+                    FunctionCounter.builder("seq.cache.timeouts", seq, CachedSeq::getTimeoutCount)
+                            .description("The number of timeouts")
+                            .tag(TAG_KEY, key)
+                            .register(registry),
+                    FunctionCounter.builder("seq.refill.failures", seq, CachedSeq::getRefillFailureCount)
+                            .description("The number of failed refills")
+                            .tag(TAG_KEY, key)
+                            .register(registry));
+        }
+
+        void remove() {
+            for (Meter meter : all) {
+                registry.remove(meter);
+            }
+        }
+    }
+}
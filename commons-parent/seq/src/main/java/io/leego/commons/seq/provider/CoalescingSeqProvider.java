@@ -0,0 +1,180 @@
+package io.leego.commons.seq.provider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A provider that coalesces concurrent requests for the same key into a single call to the delegate.
+ * <p>
+ * The first request for a key becomes the leader, and the requests arriving while the leader is calling
+ * the delegate are queued. Once the call returns, the leadership is handed over to the first queued request,
+ * which obtains one combined segment for all the queued requests and splits it among them,
+ * so that at most one call per key is in flight, and N concurrent round trips become one.
+ * The combined size never exceeds {@code maxSize}, nor the maximum size of the delegate, e.g. the block size of {@link NativeSeqProvider}.
+ * <p>
+ * Sequences are handed out in the order the requests are queued. Obtaining segments of multiple sequences,
+ * creating, updating and releasing are passed through to the delegate.
+ *
+ * @author Leego Yih
+ */
+public class CoalescingSeqProvider implements SeqProvider {
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>(64);
+    private final SeqProvider delegate;
+    private final int maxSize;
+
+    public CoalescingSeqProvider(SeqProvider delegate) {
+        this(delegate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param delegate the provider to be called.
+     * @param maxSize  the maximum size of a combined segment.
+     */
+    public CoalescingSeqProvider(SeqProvider delegate, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.delegate = delegate;
+        this.maxSize = Math.min(maxSize, delegate.getMaxSize());
+    }
+
+    @Override
+    public long next(String key) {
+        return this.next(key, 1).getValue();
+    }
+
+    @Override
+    public Segment next(String key, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        Request request = new Request(size);
+        Flight flight = flights.computeIfAbsent(key, k -> new Flight());
+        boolean leader;
+        synchronized (flight) {
+            flight.pending.addLast(request);
+            leader = !flight.running;
+            flight.running = true;
+        }
+        if (!leader) {
+            Segment segment;
+            try {
+                segment = request.future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (segment != null) {
+                return segment;
+            }
+            // The leadership is handed over, and the request is the first one of the queue.
+        }
+        return lead(key, flight);
+    }
+
+    @Override
+    public Map<String, Segment> next(Map<String, Integer> sizes) {
+        return delegate.next(sizes);
+    }
+
+    @Override
+    public boolean create(String key, long value, int increment) {
+        return delegate.create(key, value, increment);
+    }
+
+    @Override
+    public boolean update(String key, int increment) {
+        return delegate.update(key, increment);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public boolean release(String key, Segment segment) {
+        return delegate.release(key, segment);
+    }
+
+    public SeqProvider getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Obtains a combined segment for the queued requests which fit in {@code maxSize},
+     * then hands the leadership over to the next queued request, or ends the flight if there is none.
+     * The first queued request is always taken, which is the request of the leader,
+     * and its segment is returned rather than completed.
+     */
+    private Segment lead(String key, Flight flight) {
+        List<Request> batch = new ArrayList<>();
+        long total = 0;
+        synchronized (flight) {
+            while (!flight.pending.isEmpty()) {
+                Request request = flight.pending.peekFirst();
+                if (!batch.isEmpty() && total + request.size > maxSize) {
+                    break;
+                }
+                flight.pending.pollFirst();
+                batch.add(request);
+                total += request.size;
+            }
+        }
+        try {
+            Segment segment = delegate.next(key, (int) total);
+            long offset = batch.get(0).size;
+            for (int i = 1; i < batch.size(); i++) {
+                Request request = batch.get(i);
+                request.future.complete(new Segment(segment.getValue() + segment.getIncrement() * offset, segment.getIncrement(), request.size));
+                offset += request.size;
+            }
+            return new Segment(segment.getValue(), segment.getIncrement(), batch.get(0).size);
+        } catch (RuntimeException | Error e) {
+            for (int i = 1; i < batch.size(); i++) {
+                batch.get(i).future.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            Request next = null;
+            synchronized (flight) {
+                if (flight.pending.isEmpty()) {
+                    flight.running = false;
+                    flights.remove(key, flight);
+                } else {
+                    next = flight.pending.peekFirst();
+                }
+            }
+            if (next != null) {
+                next.future.complete(null);
+            }
+        }
+    }
+
+    /** The requests for a key, guarded by itself. */
+    private static class Flight {
+        final Deque<Request> pending = new ArrayDeque<>();
+        boolean running;
+    }
+
+    /** A queued request whose future is completed with the segment, or with {@code null} once it becomes the leader. */
+    private static class Request {
+        final int size;
+        final CompletableFuture<Segment> future = new CompletableFuture<>();
+
+        Request(int size) {
+            this.size = size;
+        }
+    }
+}
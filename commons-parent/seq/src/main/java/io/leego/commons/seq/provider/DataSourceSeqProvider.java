@@ -2,6 +2,7 @@ package io.leego.commons.seq.provider;
 
 import io.leego.commons.seq.exception.SeqErrorException;
 import io.leego.commons.seq.exception.SeqNotFoundException;
+import io.leego.commons.seq.metrics.SeqListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,8 +11,46 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * A provider that stores sequences in a table.
+ * <p>
+ * Sequences are allocated with one of the {@link Strategy strategies}:
+ * <ul>
+ *   <li>{@link Strategy#OPTIMISTIC} queries a sequence and then updates it with compare-and-set,
+ *   conflicts are retried with jittered exponential backoff.</li>
+ *   <li>{@link Strategy#PESSIMISTIC} increments a sequence and reads it back while holding the row lock,
+ *   either with a single {@code update ... returning} statement if the database supports it,
+ *   or with an update followed by a query in one transaction, so that it never conflicts.
+ *   Only transient errors such as deadlocks are retried.</li>
+ * </ul>
+ * <p>
+ * Every statement is prepared from a constant SQL and marked as poolable,
+ * so that it can be reused by the statement cache of the driver or the connection pool.
+ * The parameters of batch queries are padded to a power of two for the same reason.
+ * <p>
+ * A hot sequence can be {@link #createStriped(String, long, int, int) striped} over {@code N} rows
+ * named {@code key#0} to {@code key#(N-1)} to spread the write contention. The {@code i}-th row
+ * hands out {@code value + increment * (i + 1 + N * k)}, so that the rows never overlap,
+ * and each segment is obtained from one of the rows picked by the {@link StripeSelector}.
+ * Sequences are still unique but no longer strictly increasing across rows,
+ * therefore the character {@code '#'} should not be used in other keys.
+ *
  * @author Leego Yih
  */
 public class DataSourceSeqProvider implements SeqProvider {
@@ -24,12 +63,28 @@ public class DataSourceSeqProvider implements SeqProvider {
             increment int    default 1        not null,
             version   int    default 1        not null)""";
     private static final String QUERY_SQL = "select id, value, increment, version from %s where id = ?";
+    private static final String BATCH_QUERY_SQL = "select id, value, increment, version from %s where id in (%s)";
     private static final String EXISTS_SQL = "select 1 from %s where id = ?";
     private static final String INSERT_SQL = "insert into %s (id, value, increment, version) values (?, ?, ?, ?)";
     private static final String UPDATE_SQL = "update %s set increment = ?, version = version + 1 where id = ?";
     private static final String CAS_SQL = "update %s set value = ? where id = ? and value = ? and version = ?";
+    private static final String INCREMENT_SQL = "update %s set value = value + increment * ? where id = ?";
+    private static final String RETURNING_SQL = "update %s set value = value + increment * ? where id = ? returning value, increment";
+    private static final String RELEASE_SQL = "update %s set value = ? where id = ? and value = ? and increment = ?";
+    private static final String COUNT_STRIPES_SQL = "select count(*) from %s where id >= ? and id < ?";
+    private static final char STRIPE_DELIMITER = '#';
+    /** The maximum length of ids. */
+    private static final int ID_LENGTH = 64;
+    /** The maximum number of keys in a batch query, must be a power of two. */
+    private static final int BATCH_SIZE = 512;
+    /** The base of the backoff in milliseconds. */
+    private static final long BACKOFF_BASE = 1;
+    /** The maximum of the backoff in milliseconds. */
+    private static final long BACKOFF_MAX = 100;
     private final DataSource dataSource;
     private final int retries;
+    private final Strategy strategy;
+    private final StripeSelector selector;
     private final String tableName;
     private final String initSql;
     private final String querySql;
@@ -37,6 +92,23 @@ public class DataSourceSeqProvider implements SeqProvider {
     private final String insertSql;
     private final String updateSql;
     private final String casSql;
+    /** The batch query statements, the {@code i}-th one has {@code 2^i} parameters. */
+    private final String[] batchQuerySqls;
+    private final String incrementSql;
+    private final String returningSql;
+    private final String countStripesSql;
+    private final String releaseSql;
+    private final LongAdder retryCount = new LongAdder();
+    private volatile SeqListener listener = SeqListener.NOOP;
+    /** The number of stripes, keyed by the keys of the striped sequences. */
+    private final ConcurrentMap<String, Integer> stripes = new ConcurrentHashMap<>();
+    /** The random identity of this node used to pick stripes by hash. */
+    private final long node = ThreadLocalRandom.current().nextLong();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    /** Whether the database supports {@code update ... returning}. */
+    private boolean returning;
+    /** Whether the driver reports the update count of each statement in a batch. */
+    private volatile boolean batchCounted = true;
 
     public DataSourceSeqProvider(DataSource dataSource) {
         this(dataSource, TABLE_NAME, 10);
@@ -47,11 +119,21 @@ public class DataSourceSeqProvider implements SeqProvider {
     }
 
     public DataSourceSeqProvider(DataSource dataSource, String tableName, int retries) {
+        this(dataSource, tableName, retries, Strategy.OPTIMISTIC);
+    }
+
+    public DataSourceSeqProvider(DataSource dataSource, String tableName, int retries, Strategy strategy) {
+        this(dataSource, tableName, retries, strategy, StripeSelector.HASH);
+    }
+
+    public DataSourceSeqProvider(DataSource dataSource, String tableName, int retries, Strategy strategy, StripeSelector selector) {
         if (retries < 1) {
             throw new IllegalArgumentException();
         }
         this.dataSource = dataSource;
         this.retries = retries;
+        this.strategy = strategy;
+        this.selector = selector;
         this.tableName = tableName;
         this.initSql = INIT_SQL.formatted(tableName);
         this.querySql = QUERY_SQL.formatted(tableName);
@@ -59,6 +141,14 @@ public class DataSourceSeqProvider implements SeqProvider {
         this.insertSql = INSERT_SQL.formatted(tableName);
         this.updateSql = UPDATE_SQL.formatted(tableName);
         this.casSql = CAS_SQL.formatted(tableName);
+        this.batchQuerySqls = new String[Integer.numberOfTrailingZeros(BATCH_SIZE) + 1];
+        for (int i = 0; i < batchQuerySqls.length; i++) {
+            batchQuerySqls[i] = BATCH_QUERY_SQL.formatted(tableName, String.join(", ", Collections.nCopies(1 << i, "?")));
+        }
+        this.incrementSql = INCREMENT_SQL.formatted(tableName);
+        this.returningSql = RETURNING_SQL.formatted(tableName);
+        this.countStripesSql = COUNT_STRIPES_SQL.formatted(tableName);
+        this.releaseSql = RELEASE_SQL.formatted(tableName);
         this.init();
     }
 
@@ -78,31 +168,262 @@ public class DataSourceSeqProvider implements SeqProvider {
         if (size <= 0) {
             throw new IllegalArgumentException("Invalid size");
         }
+        Integer n = stripes.get(key);
+        if (n == null) {
+            try {
+                return next(key, 0, size);
+            } catch (SeqNotFoundException e) {
+                // The sequence may be striped by another node.
+                n = discover(key);
+                if (n == 0) {
+                    throw e;
+                }
+            }
+        }
+        return next(key, n, size);
+    }
+
+    /**
+     * Returns the next segments of multiple sequences over a single connection.
+     * <p>
+     * With {@link Strategy#OPTIMISTIC}, each round queries all the pending sequences with one statement
+     * and CAS them with a batch, then commits the transaction. The sequences that could not be CAS
+     * after retrying are obtained by {@link #next(String, int)} one by one.
+     * If the driver reports {@link Statement#SUCCESS_NO_INFO} for a batch, the transaction is rolled back,
+     * and the sequences are always obtained one by one from then on.
+     * <p>
+     * With {@link Strategy#PESSIMISTIC}, all the sequences are incremented with a batch in the order of keys
+     * and then queried with one statement in one transaction.
+     */
+    @Override
+    public Map<String, Segment> next(Map<String, Integer> sizes) {
+        for (Integer size : sizes.values()) {
+            if (size == null || size <= 0) {
+                throw new IllegalArgumentException("Invalid size");
+            }
+        }
+        try {
+            return nextStriped(sizes);
+        } catch (SeqNotFoundException e) {
+            // Some sequences may be striped by another node.
+            boolean discovered = false;
+            for (String key : sizes.keySet()) {
+                if (!stripes.containsKey(key) && discover(key) > 0) {
+                    discovered = true;
+                }
+            }
+            if (!discovered) {
+                throw e;
+            }
+            return nextStriped(sizes);
+        }
+    }
+
+    /**
+     * Creates a sequence striped over the given number of rows.
+     *
+     * @param key       the key of the sequence.
+     * @param value     the initialized value of the sequence.
+     * @param increment the increment of the sequence.
+     * @param stripes   the number of rows.
+     * @return {@code true} if the sequence is created.
+     */
+    public boolean createStriped(String key, long value, int increment, int stripes) {
+        if (stripes < 1 || (key + STRIPE_DELIMITER + (stripes - 1)).length() > ID_LENGTH) {
+            throw new IllegalArgumentException("Invalid stripes");
+        }
+        int stride = Math.multiplyExact(increment, stripes);
+        try (Connection connection = getConnection()) {
+            if (exists(connection, stripe(key, 0))) {
+                discover(key);
+                return true;
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = prepareStatement(connection, insertSql)) {
+                for (int i = 0; i < stripes; i++) {
+                    insert.setString(1, stripe(key, i));
+                    insert.setLong(2, value + (long) increment * (i + 1 - stripes));
+                    insert.setInt(3, stride);
+                    insert.setInt(4, 1);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to create seq '" + key + "'", e);
+        }
+        this.stripes.put(key, stripes);
+        return true;
+    }
+
+    @Override
+    public boolean create(String key, long value, int increment) {
+        try (Connection connection = getConnection()) {
+            if (exists(connection, key)) {
+                return true;
+            }
+            try (PreparedStatement insert = prepareStatement(connection, insertSql)) {
+                insert.setString(1, key);
+                insert.setLong(2, value);
+                insert.setInt(3, increment);
+                insert.setInt(4, 1);
+                return insert.executeUpdate() > 0;
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to create seq '" + key + "'", e);
+        }
+    }
+
+    /**
+     * Updates the increment of a sequence, striped sequences are never updated,
+     * since changing the stride of the rows would make them overlap.
+     *
+     * @return {@code true} if the sequence is updated, {@code false} if it is missing or striped.
+     */
+    @Override
+    public boolean update(String key, int increment) {
+        try (Connection connection = getConnection();
+             PreparedStatement update = prepareStatement(connection, updateSql)) {
+            update.setInt(1, increment);
+            update.setString(2, key);
+            if (update.executeUpdate() > 0) {
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to update seq '" + key + "'", e);
+        }
+        if (logger.isDebugEnabled() && (stripes.containsKey(key) || discover(key) > 0)) {
+            logger.debug("The increment of striped seq '{}' cannot be updated", key);
+        }
+        return false;
+    }
+
+    /**
+     * Gives the segment back with compare-and-set, striped sequences are never given back.
+     */
+    @Override
+    public boolean release(String key, Segment segment) {
+        if (stripes.containsKey(key)) {
+            return false;
+        }
+        long last = segment.getValue() + (long) segment.getIncrement() * (segment.getSize() - 1);
+        try (Connection connection = getConnection();
+             PreparedStatement release = prepareStatement(connection, releaseSql)) {
+            release.setLong(1, segment.getValue() - segment.getIncrement());
+            release.setString(2, key);
+            release.setLong(3, last);
+            release.setInt(4, segment.getIncrement());
+            return release.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to release seq '" + key + "'", e);
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        try (Connection connection = getConnection()) {
+            if (exists(connection, key)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to query seq '" + key + "'", e);
+        }
+        return stripes.containsKey(key) || discover(key) > 0;
+    }
+
+    /**
+     * Returns the number of retries caused by conflicts or transient errors since this provider was created.
+     *
+     * @return the number of retries.
+     */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public SeqListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Sets the listener notified of each retry, a batch retry notifies each pending key.
+     *
+     * @param listener the listener.
+     */
+    public void setListener(SeqListener listener) {
+        this.listener = listener != null ? listener : SeqListener.NOOP;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public StripeSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Returns the next segment of the sequence striped over the given number of rows, {@code 0} means not striped.
+     */
+    private Segment next(String key, int stripes, int size) {
+        if (strategy == Strategy.PESSIMISTIC) {
+            return lock(stripes > 0 ? stripe(key, stripes, 0) : key, size);
+        }
+        return cas(key, stripes, size);
+    }
+
+    /** Returns the next segments, each striped sequence is obtained from one of its rows. */
+    private Map<String, Segment> nextStriped(Map<String, Integer> sizes) {
+        Map<String, String> ids = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        Map<String, Integer> idSizes = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+            Integer n = stripes.get(entry.getKey());
+            String id = n != null ? stripe(entry.getKey(), n, 0) : entry.getKey();
+            ids.put(entry.getKey(), id);
+            idSizes.put(id, entry.getValue());
+        }
+        Map<String, Segment> idSegments = strategy == Strategy.PESSIMISTIC ? lock(idSizes) : cas(idSizes);
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        for (Map.Entry<String, String> entry : ids.entrySet()) {
+            segments.put(entry.getKey(), idSegments.get(entry.getValue()));
+        }
+        return segments;
+    }
+
+    private Segment cas(String key, int stripes, int size) {
         int i = 0;
         long timestamp = System.currentTimeMillis();
         try (Connection connection = getConnection()) {
             while (i < retries) {
-                PreparedStatement query = prepareStatement(connection, querySql, key);
-                ResultSet rs = query.executeQuery();
-                if (!rs.next()) {
-                    throw new SeqNotFoundException("Missing '" + key + "'");
-                }
-                Seq seq = new Seq(rs.getString(1), rs.getLong(2), rs.getInt(3), rs.getInt(4));
-                query.close();
+                // A striped sequence moves to another row after each conflict.
+                String id = stripes > 0 ? stripe(key, stripes, i) : key;
+                Seq seq = query(connection, id);
                 int increment = seq.increment;
                 long expectedValue = seq.value;
                 long newValue = expectedValue + (long) increment * size;
                 int version = seq.version;
-                PreparedStatement cas = prepareStatement(connection, casSql, newValue, key, expectedValue, version);
-                int affectedRows = cas.executeUpdate();
-                cas.close();
+                int affectedRows;
+                try (PreparedStatement cas = prepareStatement(connection, casSql)) {
+                    bindCas(cas, id, newValue, expectedValue, version);
+                    affectedRows = cas.executeUpdate();
+                }
                 if (affectedRows > 0) {
                     return new Segment(expectedValue + increment, increment, size);
                 }
                 i++;
                 if (logger.isDebugEnabled()) {
                     logger.debug("Could not CAS seq '{}' {} {}, expectedValue: {}, newValue: {}, increment: {}, version: {}",
-                            key, i, (i == 1 ? "time" : "times"), expectedValue, newValue, increment, version);
+                            id, i, (i == 1 ? "time" : "times"), expectedValue, newValue, increment, version);
+                }
+                if (i < retries) {
+                    retryCount.increment();
+                    listener.onRetry(key);
+                    backoff(i);
                 }
             }
         } catch (SQLException e) {
@@ -111,65 +432,340 @@ public class DataSourceSeqProvider implements SeqProvider {
         throw new SeqErrorException("Failed to modify seq '%s' after retrying %d %s in %d ms".formatted(key, i, (i == 1 ? "time" : "times"), System.currentTimeMillis() - timestamp));
     }
 
-    @Override
-    public boolean create(String key, long value, int increment) {
+    private Map<String, Segment> cas(Map<String, Integer> sizes) {
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        Map<String, Integer> pending = new LinkedHashMap<>(sizes);
+        if (batchCounted) {
+            try (Connection connection = getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < retries && !pending.isEmpty(); i++) {
+                        if (i > 0) {
+                            retryCount.increment();
+                            pending.keySet().forEach(id -> listener.onRetry(unstripe(id)));
+                            backoff(i);
+                        }
+                        Map<String, Segment> round = new LinkedHashMap<>((int) (pending.size() / 0.75F) + 1);
+                        List<String> keys = new ArrayList<>(pending.keySet());
+                        boolean counted = true;
+                        for (int from = 0; from < keys.size() && counted; from += BATCH_SIZE) {
+                            List<String> batch = keys.subList(from, Math.min(from + BATCH_SIZE, keys.size()));
+                            counted = casBatch(connection, batch, pending, round);
+                        }
+                        if (!counted) {
+                            // The rows of this round may or may not be updated, rolls them back and never batches again.
+                            connection.rollback();
+                            batchCounted = false;
+                            logger.warn("The driver does not report the update counts of batches, seqs are modified one by one");
+                            break;
+                        }
+                        connection.commit();
+                        segments.putAll(round);
+                        pending.keySet().removeAll(round.keySet());
+                        if (!pending.isEmpty() && logger.isDebugEnabled()) {
+                            logger.debug("Could not CAS seqs {} {} {}", pending.keySet(), i + 1, (i == 0 ? "time" : "times"));
+                        }
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new SeqErrorException("Failed to modify seqs " + pending.keySet(), e);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+            segments.put(entry.getKey(), this.cas(entry.getKey(), 0, entry.getValue()));
+        }
+        return segments;
+    }
+
+    /**
+     * Queries the sequences and CAS them with a batch, the succeeded sequences are put into the round.
+     * Returns {@code false} if the driver does not report the update counts, in which case the round is unknown.
+     */
+    private boolean casBatch(Connection connection, List<String> keys, Map<String, Integer> pending, Map<String, Segment> round) throws SQLException {
+        List<Seq> seqs = query(connection, keys);
+        try (PreparedStatement cas = prepareStatement(connection, casSql)) {
+            for (Seq seq : seqs) {
+                long newValue = seq.value + (long) seq.increment * pending.get(seq.key);
+                bindCas(cas, seq.key, newValue, seq.value, seq.version);
+                cas.addBatch();
+            }
+            int[] affectedRows = cas.executeBatch();
+            for (int i = 0; i < seqs.size(); i++) {
+                if (affectedRows[i] == Statement.SUCCESS_NO_INFO) {
+                    return false;
+                }
+                if (affectedRows[i] > 0) {
+                    Seq seq = seqs.get(i);
+                    round.put(seq.key, new Segment(seq.value + seq.increment, seq.increment, pending.get(seq.key)));
+                }
+            }
+        }
+        return true;
+    }
+
+    private Segment lock(String key, int size) {
+        int i = 0;
         try (Connection connection = getConnection()) {
-            PreparedStatement exists = prepareStatement(connection, existsSql, key);
-            if (exists.executeQuery().next()) {
-                return true;
+            for (; ; ) {
+                try {
+                    return returning
+                            ? incrementAndGet(connection, key, size)
+                            : incrementAndGet(connection, List.of(key), Map.of(key, size)).get(key);
+                } catch (SQLException e) {
+                    if (!isTransient(e) || ++i >= retries) {
+                        throw e;
+                    }
+                    logger.debug("Could not increment seq '{}' {} {}", key, i, (i == 1 ? "time" : "times"), e);
+                    retryCount.increment();
+                    listener.onRetry(unstripe(key));
+                    backoff(i);
+                }
             }
-            PreparedStatement insert = prepareStatement(connection, insertSql, key, value, increment, 1);
-            return insert.executeUpdate() > 0;
         } catch (SQLException e) {
-            throw new SeqErrorException("Failed to create seq '" + key + "'", e);
+            throw new SeqErrorException("Failed to modify seq '" + key + "'", e);
         }
     }
 
-    @Override
-    public boolean update(String key, int increment) {
+    private Map<String, Segment> lock(Map<String, Integer> sizes) {
+        // Sorts the keys, so that concurrent batches lock the rows in the same order and never deadlock each other.
+        List<String> keys = sizes.keySet().stream().sorted().toList();
+        int i = 0;
         try (Connection connection = getConnection()) {
-            PreparedStatement update = prepareStatement(connection, updateSql, increment, key);
-            return update.executeUpdate() > 0;
+            for (; ; ) {
+                try {
+                    Map<String, Segment> segments = incrementAndGet(connection, keys, sizes);
+                    Map<String, Segment> ordered = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+                    for (String key : sizes.keySet()) {
+                        ordered.put(key, segments.get(key));
+                    }
+                    return ordered;
+                } catch (SQLException e) {
+                    if (!isTransient(e) || ++i >= retries) {
+                        throw e;
+                    }
+                    logger.debug("Could not increment seqs {} {} {}", keys, i, (i == 1 ? "time" : "times"), e);
+                    retryCount.increment();
+                    keys.forEach(id -> listener.onRetry(unstripe(id)));
+                    backoff(i);
+                }
+            }
         } catch (SQLException e) {
-            throw new SeqErrorException("Failed to update seq '" + key + "'", e);
+            throw new SeqErrorException("Failed to modify seqs " + keys, e);
         }
     }
 
-    @Override
-    public boolean contains(String key) {
-        try (Connection connection = getConnection()) {
-            PreparedStatement exists = prepareStatement(connection, existsSql, key);
-            return exists.executeQuery().next();
+    /** Increments the sequence and returns it with a single {@code update ... returning} statement. */
+    private Segment incrementAndGet(Connection connection, String key, int size) throws SQLException {
+        try (PreparedStatement stmt = prepareStatement(connection, returningSql)) {
+            stmt.setLong(1, size);
+            stmt.setString(2, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SeqNotFoundException("Missing '" + key + "'");
+                }
+                return toSegment(rs.getLong(1), rs.getInt(2), size);
+            }
+        }
+    }
+
+    /** Increments the sequences with a batch and then queries them in one transaction. */
+    private Map<String, Segment> incrementAndGet(Connection connection, List<String> keys, Map<String, Integer> sizes) throws SQLException {
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (keys.size() / 0.75F) + 1);
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement increment = prepareStatement(connection, incrementSql)) {
+                for (String key : keys) {
+                    increment.setLong(1, sizes.get(key));
+                    increment.setString(2, key);
+                    increment.addBatch();
+                }
+                increment.executeBatch();
+            }
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                for (Seq seq : query(connection, keys.subList(from, Math.min(from + BATCH_SIZE, keys.size())))) {
+                    segments.put(seq.key, toSegment(seq.value, seq.increment, sizes.get(seq.key)));
+                }
+            }
+            connection.commit();
+            return segments;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private Seq query(Connection connection, String key) throws SQLException {
+        try (PreparedStatement query = prepareStatement(connection, querySql)) {
+            query.setString(1, key);
+            try (ResultSet rs = query.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SeqNotFoundException("Missing '" + key + "'");
+                }
+                return new Seq(rs.getString(1), rs.getLong(2), rs.getInt(3), rs.getInt(4));
+            }
+        }
+    }
+
+    /**
+     * Queries the sequences with one statement, the number of parameters is padded to a power of two
+     * by repeating the last key, so that at most {@code log2(BATCH_SIZE) + 1} distinct statements are prepared.
+     */
+    private List<Seq> query(Connection connection, List<String> keys) throws SQLException {
+        List<Seq> seqs = new ArrayList<>(keys.size());
+        int params = Math.max(1, Integer.highestOneBit(keys.size() - 1) << 1);
+        try (PreparedStatement query = prepareStatement(connection, batchQuerySqls[Integer.numberOfTrailingZeros(params)])) {
+            for (int i = 0; i < params; i++) {
+                query.setString(i + 1, keys.get(Math.min(i, keys.size() - 1)));
+            }
+            try (ResultSet rs = query.executeQuery()) {
+                while (rs.next()) {
+                    seqs.add(new Seq(rs.getString(1), rs.getLong(2), rs.getInt(3), rs.getInt(4)));
+                }
+            }
+        }
+        if (seqs.size() < keys.size()) {
+            Set<String> missing = new LinkedHashSet<>(keys);
+            seqs.forEach(seq -> missing.remove(seq.key));
+            throw new SeqNotFoundException("Missing " + missing);
+        }
+        return seqs;
+    }
+
+    /** Picks one of the rows of the striped sequence for the given attempt. */
+    private String stripe(String key, int stripes, int attempt) {
+        int i;
+        if (selector == StripeSelector.ROUND_ROBIN) {
+            i = roundRobin.getAndIncrement();
+        } else {
+            long h = (node ^ Thread.currentThread().threadId()) * 0x9E3779B97F4A7C15L;
+            i = (int) (h ^ (h >>> 32)) + attempt;
+        }
+        return stripe(key, Math.floorMod(i, stripes));
+    }
+
+    private String stripe(String key, int i) {
+        return key + STRIPE_DELIMITER + i;
+    }
+
+    /** Returns the key of the sequence striped over the given row, or the id itself if it is not a row of a striped sequence. */
+    private String unstripe(String id) {
+        int i = id.lastIndexOf(STRIPE_DELIMITER);
+        if (i > 0 && stripes.containsKey(id.substring(0, i))) {
+            return id.substring(0, i);
+        }
+        return id;
+    }
+
+    /** Counts the rows of the striped sequence, and caches the number if the sequence is striped. */
+    private int discover(String key) {
+        int n;
+        try (Connection connection = getConnection();
+             PreparedStatement count = prepareStatement(connection, countStripesSql)) {
+            count.setString(1, key + STRIPE_DELIMITER);
+            count.setString(2, key + (char) (STRIPE_DELIMITER + 1));
+            try (ResultSet rs = count.executeQuery()) {
+                n = rs.next() ? rs.getInt(1) : 0;
+            }
         } catch (SQLException e) {
             throw new SeqErrorException("Failed to query seq '" + key + "'", e);
         }
+        if (n > 0) {
+            stripes.put(key, n);
+        }
+        return n;
+    }
+
+    /** Returns the segment ending with the given value. */
+    private Segment toSegment(long value, int increment, int size) {
+        return new Segment(value - (long) increment * (size - 1), increment, size);
+    }
+
+    /** Returns {@code true} if the error is transient, e.g. a deadlock or a serialization failure. */
+    private boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException || (state != null && state.startsWith("40"));
+    }
+
+    /** Sleeps for a random time up to the exponential backoff of the given attempt. */
+    private void backoff(int attempt) {
+        long bound = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt, 16));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SeqErrorException(e);
+        }
+    }
+
+    private boolean exists(Connection connection, String key) throws SQLException {
+        try (PreparedStatement exists = prepareStatement(connection, existsSql)) {
+            exists.setString(1, key);
+            try (ResultSet rs = exists.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void bindCas(PreparedStatement cas, String key, long newValue, long expectedValue, int version) throws SQLException {
+        cas.setLong(1, newValue);
+        cas.setString(2, key);
+        cas.setLong(3, expectedValue);
+        cas.setInt(4, version);
     }
 
     private Connection getConnection() throws SQLException {
         Connection connection = dataSource.getConnection();
-        connection.setAutoCommit(true);
+        if (!connection.getAutoCommit()) {
+            connection.setAutoCommit(true);
+        }
         return connection;
     }
 
-    private PreparedStatement prepareStatement(Connection connection, String sql, Object... params) throws SQLException {
+    /** Prepares a statement and hints the driver to cache it. */
+    private PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
         PreparedStatement stmt = connection.prepareStatement(sql);
-        if (params != null && params.length > 0) {
-            for (int i = 0; i < params.length; i++) {
-                stmt.setObject(i + 1, params[i]);
-            }
-        }
+        stmt.setPoolable(true);
         return stmt;
     }
 
     private void init() {
-        try (Connection connection = getConnection()) {
-            PreparedStatement update = prepareStatement(connection, initSql);
+        try (Connection connection = getConnection();
+             PreparedStatement update = connection.prepareStatement(initSql)) {
             update.executeUpdate();
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+            returning = product.contains("postgresql") || product.contains("sqlite");
         } catch (SQLException e) {
             throw new SeqErrorException("Failed to init", e);
         }
     }
 
+    /**
+     * The selector to pick one of the rows of a striped sequence.
+     */
+    public enum StripeSelector {
+        /** Picks the row by the hash of the node and the thread, and moves to the next row after each conflict. */
+        HASH,
+        /** Picks the rows in turn. */
+        ROUND_ROBIN,
+    }
+
+    /**
+     * The strategy to allocate sequences.
+     */
+    public enum Strategy {
+        /** Queries a sequence and then updates it with compare-and-set, retrying on conflicts. */
+        OPTIMISTIC,
+        /** Increments a sequence and reads it back while holding the row lock, never conflicts. */
+        PESSIMISTIC,
+    }
+
     private class Seq {
         String key;
         long value;
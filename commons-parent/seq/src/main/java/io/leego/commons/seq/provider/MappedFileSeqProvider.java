@@ -0,0 +1,314 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.seq.exception.SeqErrorException;
+import io.leego.commons.seq.exception.SeqNotFoundException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A provider that stores sequences in a memory-mapped file, intended for standalone applications.
+ * <p>
+ * The file consists of a header and an array of fixed-size slots, one per sequence:
+ * <pre>
+ * header: | magic (4) | version (4) | capacity (4) | count (4) | reserved (48) |
+ * slot:   | key length (2) | key (64) | reserved (2) | increment (4) | high-water mark (8) | reserved (12) |
+ * </pre>
+ * The slots are indexed in memory by key when the file is opened. Sequences are obtained in memory,
+ * and the high-water mark is only written and forced to the storage device when a range of
+ * {@code reserveSize} sequences is reserved ahead. After a crash, sequences continue from the
+ * high-water mark, so that a sequence is never reissued, at the cost of skipping the unused part of the range.
+ * <p>
+ * The file is locked while it is opened, so it cannot be shared between processes.
+ * Once closed, the file is never written again, and no sequence is obtained past the high-water mark.
+ *
+ * @author Leego Yih
+ */
+public class MappedFileSeqProvider implements SeqProvider, AutoCloseable {
+    private static final int MAGIC = 0x4C534551;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int SLOT_SIZE = 96;
+    private static final int KEY_OFFSET = 2;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int INCREMENT_OFFSET = 68;
+    private static final int VALUE_OFFSET = 72;
+    private final ConcurrentMap<String, Slot> index = new ConcurrentHashMap<>(64);
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int reserveSize;
+    /** Writes to the file hold the read lock, closing holds the write lock. */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    private int count;
+
+    public MappedFileSeqProvider(Path path) {
+        this(path, 1024, 10000);
+    }
+
+    public MappedFileSeqProvider(Path path, int capacity, int reserveSize) {
+        if (capacity <= 0 || reserveSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.reserveSize = reserveSize;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            this.lock = lock;
+            if (lock == null) {
+                channel.close();
+                throw new SeqErrorException("File '" + path + "' is used by another process");
+            }
+            boolean initialized;
+            try {
+                initialized = false;
+                if (channel.size() >= HEADER_SIZE) {
+                    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                    int magic = header.getInt(0);
+                    // Mapping grows the file before the magic is written, so a file without the magic has not been initialized.
+                    if (magic != 0) {
+                        if (magic != MAGIC || header.getInt(4) != VERSION) {
+                            throw new SeqErrorException("File '" + path + "' is not a seq file");
+                        }
+                        capacity = header.getInt(CAPACITY_OFFSET);
+                        initialized = true;
+                    }
+                }
+                this.capacity = capacity;
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_SIZE * capacity);
+            } catch (IOException | RuntimeException e) {
+                closeChannel();
+                throw e;
+            }
+            if (!initialized) {
+                // Writes the magic at last, so that a file interrupted before is initialized again.
+                buffer.putInt(4, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.force();
+                buffer.putInt(0, MAGIC);
+                buffer.force();
+            }
+            this.count = buffer.getInt(COUNT_OFFSET);
+            for (int i = 0; i < count; i++) {
+                Slot slot = readSlot(HEADER_SIZE + SLOT_SIZE * i);
+                index.put(slot.key, slot);
+            }
+        } catch (IOException e) {
+            throw new SeqErrorException("Failed to open file '" + path + "'", e);
+        }
+    }
+
+    @Override
+    public long next(String key) {
+        return this.next(key, 1).getValue();
+    }
+
+    @Override
+    public Segment next(String key, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        ensureOpen();
+        Slot slot = getSlot(key);
+        int increment = slot.increment;
+        long delta = (long) increment * size;
+        for (; ; ) {
+            long value = slot.value.get();
+            long newValue = value + delta;
+            if (newValue > slot.limit) {
+                reserve(slot, newValue);
+                continue;
+            }
+            if (slot.value.compareAndSet(value, newValue)) {
+                return new Segment(value + increment, increment, size);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean create(String key, long value, int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("Invalid increment");
+        }
+        ensureOpen();
+        if (index.containsKey(key)) {
+            return true;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Invalid key");
+        }
+        if (count >= capacity) {
+            throw new SeqErrorException("Failed to create seq '" + key + "', the file is full");
+        }
+        closeLock.readLock().lock();
+        try {
+            ensureOpen();
+            int offset = HEADER_SIZE + SLOT_SIZE * count;
+            buffer.putShort(offset, (short) bytes.length);
+            buffer.put(offset + KEY_OFFSET, bytes);
+            buffer.putInt(offset + INCREMENT_OFFSET, increment);
+            buffer.putLong(offset + VALUE_OFFSET, value);
+            buffer.force(offset, SLOT_SIZE);
+            // Increases the count at last, so that a partially written slot is ignored.
+            buffer.putInt(COUNT_OFFSET, ++count);
+            buffer.force(COUNT_OFFSET, 4);
+            index.put(key, new Slot(key, offset, value, increment));
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean update(String key, int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("Invalid increment");
+        }
+        Slot slot = index.get(key);
+        if (slot == null) {
+            return false;
+        }
+        closeLock.readLock().lock();
+        try {
+            ensureOpen();
+            synchronized (slot) {
+                buffer.putInt(slot.offset + INCREMENT_OFFSET, increment);
+                buffer.force(slot.offset + INCREMENT_OFFSET, 4);
+                slot.increment = increment;
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Gives the segment back in memory, the high-water mark is left as it is.
+     */
+    @Override
+    public boolean release(String key, Segment segment) {
+        Slot slot = index.get(key);
+        if (slot == null || slot.increment != segment.getIncrement()) {
+            return false;
+        }
+        long last = segment.getValue() + (long) segment.getIncrement() * (segment.getSize() - 1);
+        return slot.value.compareAndSet(last, segment.getValue() - segment.getIncrement());
+    }
+
+    /**
+     * Forces the file and releases the lock, after the writes in progress are done.
+     */
+    @Override
+    public synchronized void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            closeChannel();
+        } catch (IOException e) {
+            throw new SeqErrorException("Failed to close file", e);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Reserves a range ahead covering the given value, and forces the high-water mark before handing it out. */
+    private void reserve(Slot slot, long value) {
+        closeLock.readLock().lock();
+        try {
+            ensureOpen();
+            synchronized (slot) {
+                if (value <= slot.limit) {
+                    return;
+                }
+                long limit = value + (long) slot.increment * reserveSize;
+                buffer.putLong(slot.offset + VALUE_OFFSET, limit);
+                buffer.force(slot.offset + VALUE_OFFSET, 8);
+                slot.limit = limit;
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (lock.isValid()) {
+            lock.release();
+        }
+        channel.close();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new SeqErrorException("The provider has been closed");
+        }
+    }
+
+    private Slot readSlot(int offset) {
+        byte[] bytes = new byte[buffer.getShort(offset)];
+        buffer.get(offset + KEY_OFFSET, bytes);
+        String key = new String(bytes, StandardCharsets.UTF_8);
+        // Continues from the high-water mark, skipping the range reserved before.
+        return new Slot(key, offset, buffer.getLong(offset + VALUE_OFFSET), buffer.getInt(offset + INCREMENT_OFFSET));
+    }
+
+    private Slot getSlot(String key) {
+        Slot slot = index.get(key);
+        if (slot == null) {
+            throw new SeqNotFoundException("Missing '" + key + "'");
+        }
+        return slot;
+    }
+
+    private static class Slot {
+        final String key;
+        final int offset;
+        /** The last obtained value. */
+        final AtomicLong value;
+        /** The high-water mark persisted in the file. */
+        volatile long limit;
+        volatile int increment;
+
+        Slot(String key, int offset, long value, int increment) {
+            this.key = key;
+            this.offset = offset;
+            this.value = new AtomicLong(value);
+            this.limit = value;
+            this.increment = increment;
+        }
+    }
+}
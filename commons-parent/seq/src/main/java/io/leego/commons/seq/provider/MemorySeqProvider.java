@@ -2,6 +2,8 @@ package io.leego.commons.seq.provider;
 
 import io.leego.commons.seq.exception.SeqNotFoundException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -22,11 +24,24 @@ public class MemorySeqProvider implements SeqProvider {
         if (size <= 0) {
             throw new IllegalArgumentException("Invalid size");
         }
-        AtomicSeq seq = getSeq(key);
-        int increment = seq.increment;
-        long delta = (long) increment * size;
-        long newValue = seq.addAndGet(delta);
-        return new Segment(newValue - delta + increment, increment, size);
+        return next(getSeq(key), size);
+    }
+
+    @Override
+    public Map<String, Segment> next(Map<String, Integer> sizes) {
+        // Validates all the keys and sizes before obtaining any segment.
+        Map<String, AtomicSeq> seqs = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("Invalid size");
+            }
+            seqs.put(entry.getKey(), getSeq(entry.getKey()));
+        }
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        for (Map.Entry<String, AtomicSeq> entry : seqs.entrySet()) {
+            segments.put(entry.getKey(), next(entry.getValue(), sizes.get(entry.getKey())));
+        }
+        return segments;
     }
 
     @Override
@@ -49,6 +64,23 @@ public class MemorySeqProvider implements SeqProvider {
         return store.containsKey(key);
     }
 
+    @Override
+    public boolean release(String key, Segment segment) {
+        AtomicSeq seq = store.get(key);
+        if (seq == null || seq.increment != segment.getIncrement()) {
+            return false;
+        }
+        long last = segment.getValue() + (long) segment.getIncrement() * (segment.getSize() - 1);
+        return seq.value.compareAndSet(last, segment.getValue() - segment.getIncrement());
+    }
+
+    private Segment next(AtomicSeq seq, int size) {
+        int increment = seq.increment;
+        long delta = (long) increment * size;
+        long newValue = seq.addAndGet(delta);
+        return new Segment(newValue - delta + increment, increment, size);
+    }
+
     private AtomicSeq getSeq(String key) {
         AtomicSeq seq = this.store.get(key);
         if (seq == null) {
@@ -0,0 +1,409 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.seq.exception.SeqErrorException;
+import io.leego.commons.seq.exception.SeqNotFoundException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * A provider that maps sequences onto the native sequences of the database,
+ * e.g. PostgreSQL, Oracle, H2 and MariaDB.
+ * <p>
+ * A native sequence hands out blocks of {@code blockSize} sequences, its {@code INCREMENT BY}
+ * is set to {@code increment * blockSize}, so that a segment of at most {@code blockSize} sequences
+ * is obtained with a single {@code nextval}. The remaining part of a block is skipped if the segment is smaller,
+ * therefore the capacity of {@link io.leego.commons.seq.client.CachedSeq} should equal the block size.
+ * <p>
+ * Keys are mapped to sequence names with a prefix, and must only consist of letters, digits and underscores.
+ * Names are not quoted, so keys are case-insensitive. The increment of each sequence is cached once it is
+ * read from the database, so the increment should not be updated while the sequence is used by other providers.
+ * A sequence whose {@code INCREMENT BY} is not a multiple of the block size, e.g. created with another block size,
+ * is rejected rather than handing out overlapping blocks.
+ *
+ * @author Leego Yih
+ */
+public class NativeSeqProvider implements SeqProvider {
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+    private static final String PREFIX = "seq_";
+    /** The maximum length of names. */
+    private static final int NAME_LENGTH = 63;
+    private final ConcurrentMap<String, Sequence> sequences = new ConcurrentHashMap<>(64);
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final String prefix;
+    private final int blockSize;
+    private final int cache;
+
+    public NativeSeqProvider(DataSource dataSource) {
+        this(dataSource, null, PREFIX, 1000, 10);
+    }
+
+    public NativeSeqProvider(DataSource dataSource, int blockSize) {
+        this(dataSource, null, PREFIX, blockSize, 10);
+    }
+
+    /**
+     * @param dataSource the data source.
+     * @param dialect    the dialect, detected from the database if {@code null}.
+     * @param prefix     the prefix of sequence names.
+     * @param blockSize  the number of sequences handed out by a single {@code nextval}.
+     * @param cache      the number of blocks preallocated in memory by the database.
+     */
+    public NativeSeqProvider(DataSource dataSource, Dialect dialect, String prefix, int blockSize, int cache) {
+        if (blockSize < 1 || cache < 2) {
+            throw new IllegalArgumentException();
+        }
+        if (!prefix.isEmpty() && !KEY_PATTERN.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("Invalid prefix");
+        }
+        this.dataSource = dataSource;
+        this.dialect = dialect != null ? dialect : detect();
+        this.prefix = prefix;
+        this.blockSize = blockSize;
+        this.cache = cache;
+    }
+
+    /**
+     * Should not be used
+     *
+     * @deprecated Use {@link #next(String, int)} with {@link io.leego.commons.seq.client.CachedSeq}
+     */
+    @Override
+    @Deprecated
+    public long next(String key) {
+        return this.next(key, 1).getValue();
+    }
+
+    @Override
+    public Segment next(String key, int size) {
+        if (size <= 0 || size > blockSize) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return next(connection, getSequence(connection, key), size);
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to obtain seq '" + key + "'", e);
+        }
+    }
+
+    /**
+     * Returns the next segments of multiple sequences over a single connection.
+     */
+    @Override
+    public Map<String, Segment> next(Map<String, Integer> sizes) {
+        for (Integer size : sizes.values()) {
+            if (size == null || size <= 0 || size > blockSize) {
+                throw new IllegalArgumentException("Invalid size");
+            }
+        }
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        try (Connection connection = dataSource.getConnection()) {
+            for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+                segments.put(entry.getKey(), next(connection, getSequence(connection, entry.getKey()), entry.getValue()));
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to obtain seqs " + sizes.keySet(), e);
+        }
+        return segments;
+    }
+
+    @Override
+    public boolean create(String key, long value, int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("Invalid increment");
+        }
+        String name = toName(key);
+        long start = value + increment;
+        long step = Math.multiplyExact((long) increment, blockSize);
+        try (Connection connection = dataSource.getConnection()) {
+            if (exists(connection, name)) {
+                return true;
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate(dialect.createSql(name, start, step, cache));
+            } catch (SQLException e) {
+                // The sequence may be created by another node concurrently.
+                if (!exists(connection, name)) {
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to create seq '" + key + "'", e);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the increment. One block is skipped before altering the sequence,
+     * so that the blocks with the new increment never overlap the blocks handed out before.
+     */
+    @Override
+    public boolean update(String key, int increment) {
+        if (increment <= 0) {
+            throw new IllegalArgumentException("Invalid increment");
+        }
+        String name = toName(key);
+        long step = Math.multiplyExact((long) increment, blockSize);
+        try (Connection connection = dataSource.getConnection()) {
+            if (!exists(connection, name)) {
+                return false;
+            }
+            Sequence sequence = getSequence(connection, key);
+            next(connection, sequence, 1);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate(dialect.alterSql(name, step));
+            }
+            sequence.increment = increment;
+            return true;
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to update seq '" + key + "'", e);
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        if (sequences.containsKey(key)) {
+            return true;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return exists(connection, toName(key));
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to query seq '" + key + "'", e);
+        }
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the block size, a segment is taken from a single block.
+     */
+    @Override
+    public int getMaxSize() {
+        return blockSize;
+    }
+
+    private Segment next(Connection connection, Sequence sequence, int size) throws SQLException {
+        try (PreparedStatement stmt = prepareStatement(connection, sequence.nextSql);
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SeqErrorException("No value is returned by '" + sequence.nextSql + "'");
+            }
+            return new Segment(rs.getLong(1), sequence.increment, size);
+        }
+    }
+
+    /** Returns the cached sequence, or reads the increment of the sequence from the database. */
+    private Sequence getSequence(Connection connection, String key) throws SQLException {
+        Sequence sequence = sequences.get(key);
+        if (sequence != null) {
+            return sequence;
+        }
+        String name = toName(key);
+        if (!exists(connection, name)) {
+            throw new SeqNotFoundException("Missing '" + key + "'");
+        }
+        long step;
+        try (PreparedStatement stmt = prepareStatement(connection, dialect.stepSql(name))) {
+            if (dialect.bindsStepName()) {
+                stmt.setString(1, name);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SeqNotFoundException("Missing '" + key + "'");
+                }
+                step = rs.getLong(1);
+            }
+        }
+        if (step % blockSize != 0 || step / blockSize < 1 || step / blockSize > Integer.MAX_VALUE) {
+            throw new SeqErrorException("The increment %d of seq '%s' is not a multiple of the block size %d".formatted(step, key, blockSize));
+        }
+        sequence = new Sequence(dialect.nextSql(name), (int) (step / blockSize));
+        Sequence existing = sequences.putIfAbsent(key, sequence);
+        return existing != null ? existing : sequence;
+    }
+
+    private boolean exists(Connection connection, String name) throws SQLException {
+        try (PreparedStatement stmt = prepareStatement(connection, dialect.existsSql())) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Validates the key and returns the name of the sequence. */
+    private String toName(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches() || prefix.length() + key.length() > NAME_LENGTH) {
+            throw new IllegalArgumentException("Invalid key '" + key + "'");
+        }
+        return dialect.normalize(prefix + key);
+    }
+
+    /** Prepares a statement and hints the driver to cache it. */
+    private PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql);
+        stmt.setPoolable(true);
+        return stmt;
+    }
+
+    private Dialect detect() {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            for (Dialect dialect : Dialect.values()) {
+                if (product.contains(dialect.product)) {
+                    return dialect;
+                }
+            }
+            throw new SeqErrorException("Unsupported database '" + product + "'");
+        } catch (SQLException e) {
+            throw new SeqErrorException("Failed to detect the dialect", e);
+        }
+    }
+
+    /**
+     * The SQL dialects of native sequences. Names are bound as parameters when they are compared as values,
+     * and have been validated before they are formatted into statements as identifiers.
+     */
+    public enum Dialect {
+        POSTGRESQL("postgresql") {
+            @Override
+            String nextSql(String name) {
+                return "select nextval('" + name + "')";
+            }
+
+            @Override
+            String existsSql() {
+                return "select 1 from pg_sequences where schemaname = current_schema() and sequencename = ?";
+            }
+
+            @Override
+            String stepSql(String name) {
+                return "select increment_by from pg_sequences where schemaname = current_schema() and sequencename = ?";
+            }
+        },
+        ORACLE("oracle") {
+            @Override
+            String nextSql(String name) {
+                return "select " + name + ".nextval from dual";
+            }
+
+            @Override
+            String existsSql() {
+                return "select 1 from user_sequences where sequence_name = ?";
+            }
+
+            @Override
+            String stepSql(String name) {
+                return "select increment_by from user_sequences where sequence_name = ?";
+            }
+
+            @Override
+            String normalize(String name) {
+                return name.toUpperCase(Locale.ROOT);
+            }
+        },
+        H2("h2") {
+            @Override
+            String nextSql(String name) {
+                return "select next value for " + name;
+            }
+
+            @Override
+            String existsSql() {
+                return "select 1 from information_schema.sequences where sequence_schema = schema() and sequence_name = ?";
+            }
+
+            @Override
+            String stepSql(String name) {
+                return "select increment from information_schema.sequences where sequence_schema = schema() and sequence_name = ?";
+            }
+
+            @Override
+            String normalize(String name) {
+                return name.toUpperCase(Locale.ROOT);
+            }
+        },
+        MARIADB("mariadb") {
+            @Override
+            String nextSql(String name) {
+                return "select nextval(" + name + ")";
+            }
+
+            @Override
+            String existsSql() {
+                return "select 1 from information_schema.tables where table_schema = database() and table_type = 'SEQUENCE' and table_name = ?";
+            }
+
+            @Override
+            String stepSql(String name) {
+                // The sequence is a table, whose name is an identifier that cannot be bound.
+                return "select increment from " + name;
+            }
+
+            @Override
+            boolean bindsStepName() {
+                return false;
+            }
+        },
+        ;
+
+        /** The keyword of the database product name. */
+        private final String product;
+
+        Dialect(String product) {
+            this.product = product;
+        }
+
+        abstract String nextSql(String name);
+
+        /** Returns the statement checking the existence of the sequence whose name is bound to the only parameter. */
+        abstract String existsSql();
+
+        /** Returns the statement querying the {@code INCREMENT BY} of the sequence, whose name is bound if {@link #bindsStepName()}. */
+        abstract String stepSql(String name);
+
+        boolean bindsStepName() {
+            return true;
+        }
+
+        String createSql(String name, long start, long step, int cache) {
+            return "create sequence %s start with %d increment by %d minvalue %d cache %d".formatted(name, start, step, start, cache);
+        }
+
+        String alterSql(String name, long step) {
+            return "alter sequence %s increment by %d".formatted(name, step);
+        }
+
+        /** Returns the name in the case the database stores unquoted identifiers. */
+        String normalize(String name) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static class Sequence {
+        final String nextSql;
+        volatile int increment;
+
+        Sequence(String nextSql, int increment) {
+            this.nextSql = nextSql;
+            this.increment = increment;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 /**
  * @author Leego Yih
@@ -25,6 +26,29 @@ public final class Segment implements Iterable<Long>, Serializable {
         this.size = size;
     }
 
+    /**
+     * Returns the segment of the given sequences, which must be evenly spaced by an {@code int} increment.
+     *
+     * @param values the sequences.
+     * @return the segment.
+     * @throws IllegalArgumentException if the sequences are empty or not contiguous.
+     */
+    public static Segment of(long[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        long increment = values.length > 1 ? values[1] - values[0] : 1;
+        if (increment != (int) increment) {
+            throw new IllegalArgumentException("The sequences are not contiguous");
+        }
+        for (int i = 2; i < values.length; i++) {
+            if (values[i] - values[i - 1] != increment) {
+                throw new IllegalArgumentException("The sequences are not contiguous");
+            }
+        }
+        return new Segment(values[0], (int) increment, values.length);
+    }
+
     public long getValue() {
         return value;
     }
@@ -45,6 +69,10 @@ public final class Segment implements Iterable<Long>, Serializable {
         return array;
     }
 
+    public LongStream stream() {
+        return LongStream.range(0, size).map(i -> value + increment * i);
+    }
+
     public <C extends Collection<Long>> C toCollection(Supplier<C> collectionFactory) {
         C c = collectionFactory.get();
         for (int i = 0; i < size; i++) {
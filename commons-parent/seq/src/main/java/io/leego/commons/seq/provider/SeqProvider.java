@@ -2,6 +2,9 @@ package io.leego.commons.seq.provider;
 
 import io.leego.commons.seq.exception.SeqNotFoundException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Leego Yih
  */
@@ -27,6 +30,25 @@ public interface SeqProvider {
      */
     Segment next(String key, int size);
 
+    /**
+     * Returns the next segments of multiple sequences.
+     * <p>
+     * The default implementation obtains the segments one by one,
+     * implementations should override it to obtain them in a single round trip.
+     *
+     * @param sizes the sizes to be obtained, keyed by the keys of the sequences.
+     * @return the next segments, keyed by the keys of the sequences.
+     * @throws IllegalArgumentException if any size is negative
+     * @throws SeqNotFoundException     if any sequence is missing
+     */
+    default Map<String, Segment> next(Map<String, Integer> sizes) {
+        Map<String, Segment> segments = new LinkedHashMap<>((int) (sizes.size() / 0.75F) + 1);
+        for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+            segments.put(entry.getKey(), this.next(entry.getKey(), entry.getValue()));
+        }
+        return segments;
+    }
+
     /**
      * Creates a sequence.
      *
@@ -54,6 +76,32 @@ public interface SeqProvider {
      */
     boolean contains(String key);
 
+    /**
+     * Gives an unused segment back, so that its sequences can be obtained again.
+     * The segment can only be given back if it is the tail of the last segment obtained from the sequence,
+     * i.e. no segment has been obtained past it by anyone since.
+     * <p>
+     * The default implementation gives nothing back.
+     *
+     * @param key     the key of the sequence.
+     * @param segment the unused segment.
+     * @return {@code true} if the segment is given back.
+     */
+    default boolean release(String key, Segment segment) {
+        return false;
+    }
+
+    /**
+     * Returns the maximum size of a segment obtained at once, larger sizes are rejected by {@link #next(String, int)}.
+     * <p>
+     * The default implementation returns {@link Integer#MAX_VALUE}.
+     *
+     * @return the maximum size of a segment.
+     */
+    default int getMaxSize() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Creates a sequence with the value of 0 and the increment of 1.
      *
@@ -0,0 +1,244 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.concurrent.NamedThreadFactory;
+import io.leego.commons.lock.ExpiringDistributedAccessor;
+import io.leego.commons.seq.exception.SeqErrorException;
+import io.leego.commons.seq.exception.SeqNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A provider that generates 64-bit sequences locally without any round trip, which are composed of
+ * <pre>
+ * | sign (1) | timestamp (63 - workerBits - sequenceBits) | worker id (workerBits) | sequence (sequenceBits) |
+ * </pre>
+ * Sequences are unique and roughly ordered by time, but they are not contiguous across milliseconds,
+ * so a segment can only be obtained from a single millisecond, that is, at most {@code 2^sequenceBits} sequences.
+ * <p>
+ * The worker id is leased through {@link ExpiringDistributedAccessor#setIfAbsent(String, String, long, TimeUnit)}
+ * and renewed in the background with {@link ExpiringDistributedAccessor#expire(String, String, long, TimeUnit)}. If the lease cannot be renewed in time, no sequence is generated
+ * until another worker id is leased.
+ * <p>
+ * If the clock moves backwards, sequences keep being generated from the last timestamp,
+ * until the clock falls behind more than {@code maxBackward}, which must be less than the lease timeout.
+ * Sequences of all the keys are generated from the same clock, so the keys only serve as names.
+ *
+ * @author Leego Yih
+ */
+public class SnowflakeSeqProvider implements SeqProvider, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SnowflakeSeqProvider.class);
+    /** 2024-01-01T00:00:00Z */
+    private static final long EPOCH = 1704067200000L;
+    private static final String LEASE_PREFIX = "seq:worker:";
+    private final ConcurrentMap<String, Boolean> keys = new ConcurrentHashMap<>(64);
+    private final ExpiringDistributedAccessor accessor;
+    private final String leasePrefix;
+    /** lease timeout in milliseconds */
+    private final long leaseTimeout;
+    private final long epoch;
+    private final int workerBits;
+    private final int sequenceBits;
+    private final long maxWorkerId;
+    private final long maxSequence;
+    /** max backward in milliseconds */
+    private final long maxBackward;
+    private final String token = UUID.randomUUID().toString();
+    private final ScheduledExecutorService executor;
+    /** The last timestamp and the last sequence, composed of {@code timestamp << sequenceBits | sequence}. */
+    private final AtomicLong state = new AtomicLong();
+    /** The leased worker id, {@code -1} means not leased. */
+    private volatile long workerId = -1;
+    /** The time in nanoseconds before which the lease is held. */
+    private volatile long leaseDeadline;
+
+    public SnowflakeSeqProvider(ExpiringDistributedAccessor accessor) {
+        this(accessor, LEASE_PREFIX, Duration.ofSeconds(30));
+    }
+
+    public SnowflakeSeqProvider(ExpiringDistributedAccessor accessor, String leasePrefix, Duration leaseTimeout) {
+        this(accessor, leasePrefix, leaseTimeout, EPOCH, 10, 12, Duration.ofSeconds(5));
+    }
+
+    public SnowflakeSeqProvider(ExpiringDistributedAccessor accessor, String leasePrefix, Duration leaseTimeout,
+                                long epoch, int workerBits, int sequenceBits, Duration maxBackward) {
+        if (workerBits < 1 || sequenceBits < 1 || workerBits + sequenceBits > 22) {
+            throw new IllegalArgumentException("Invalid bits");
+        }
+        if (leaseTimeout.toMillis() < 3) {
+            throw new IllegalArgumentException("Invalid lease timeout");
+        }
+        // A worker id taken over after the lease expires must not reach the timestamps generated before the clock moved backwards.
+        if (leaseTimeout.toMillis() <= maxBackward.toMillis()) {
+            throw new IllegalArgumentException("The lease timeout must be greater than the max backward");
+        }
+        this.accessor = accessor;
+        this.leasePrefix = leasePrefix;
+        this.leaseTimeout = leaseTimeout.toMillis();
+        this.epoch = epoch;
+        this.workerBits = workerBits;
+        this.sequenceBits = sequenceBits;
+        this.maxWorkerId = (1L << workerBits) - 1;
+        this.maxSequence = (1L << sequenceBits) - 1;
+        this.maxBackward = maxBackward.toMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("seq-snowflake", true));
+        this.lease();
+        long period = this.leaseTimeout / 3;
+        this.executor.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long next(String key) {
+        return this.next(key, 1).getValue();
+    }
+
+    @Override
+    public Segment next(String key, int size) {
+        if (size <= 0 || size > maxSequence + 1) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        if (!keys.containsKey(key)) {
+            throw new SeqNotFoundException("Missing '" + key + "'");
+        }
+        long workerId = this.workerId;
+        if (workerId < 0 || leaseDeadline - System.nanoTime() <= 0) {
+            throw new SeqErrorException("The worker id of seq '" + key + "' is not leased");
+        }
+        for (; ; ) {
+            long last = state.get();
+            long lastTimestamp = last >>> sequenceBits;
+            long now = System.currentTimeMillis() - epoch;
+            long timestamp;
+            long sequence;
+            if (now > lastTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else if (lastTimestamp - now > maxBackward) {
+                throw new SeqErrorException("Clock moved backwards by %d ms, refusing to generate seq '%s'".formatted(lastTimestamp - now, key));
+            } else {
+                // Keeps generating from the last timestamp, borrows the next millisecond if it is exhausted.
+                timestamp = lastTimestamp;
+                sequence = (last & maxSequence) + 1;
+                if (sequence + size - 1 > maxSequence) {
+                    timestamp++;
+                    sequence = 0;
+                    if (timestamp - now > maxBackward) {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+                }
+            }
+            if (state.compareAndSet(last, timestamp << sequenceBits | (sequence + size - 1))) {
+                return new Segment(timestamp << (workerBits + sequenceBits) | workerId << sequenceBits | sequence, 1, size);
+            }
+        }
+    }
+
+    /**
+     * Registers a sequence, the value and the increment are ignored because sequences are generated from the clock.
+     */
+    @Override
+    public boolean create(String key, long value, int increment) {
+        return keys.putIfAbsent(key, Boolean.TRUE) == null;
+    }
+
+    /**
+     * The increment cannot be updated because sequences are generated from the clock.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean update(String key, int increment) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return keys.containsKey(key);
+    }
+
+    /**
+     * Stops renewing and releases the leased worker id.
+     * If the last timestamp has not been passed by the clock yet, e.g. the clock moved backwards or a millisecond was borrowed,
+     * the lease is kept until the clock passes it, so that the next owner of the worker id never generates the same sequences.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        long workerId = this.workerId;
+        this.workerId = -1;
+        if (workerId < 0) {
+            return;
+        }
+        long ahead = (state.get() >>> sequenceBits) - (System.currentTimeMillis() - epoch);
+        if (ahead < 0) {
+            accessor.delete(leasePrefix + workerId, token);
+        } else {
+            accessor.expire(leasePrefix + workerId, token, ahead + 1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns {@code 2^sequenceBits}, a segment is taken from a single millisecond.
+     */
+    @Override
+    public int getMaxSize() {
+        return (int) (maxSequence + 1);
+    }
+
+    /**
+     * Returns the leased worker id.
+     *
+     * @return the leased worker id, or {@code -1} if not leased.
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /** Leases a worker id, starting from a random one to reduce collisions between nodes. */
+    private void lease() {
+        long start = ThreadLocalRandom.current().nextLong(maxWorkerId + 1);
+        for (long i = 0; i <= maxWorkerId; i++) {
+            long id = (start + i) & maxWorkerId;
+            long timestamp = System.nanoTime();
+            if (accessor.setIfAbsent(leasePrefix + id, token, leaseTimeout, TimeUnit.MILLISECONDS)) {
+                leaseDeadline = timestamp + TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+                workerId = id;
+                logger.info("Leased worker id {}", id);
+                return;
+            }
+        }
+        throw new SeqErrorException("No worker id is available");
+    }
+
+    /**
+     * Renews the lease only if it is still held by the token of this node. The lease is given up once it has expired locally,
+     * or once the token no longer matches, because another node may have leased the same worker id.
+     */
+    private void renew() {
+        try {
+            long workerId = this.workerId;
+            long timestamp = System.nanoTime();
+            if (workerId >= 0 && leaseDeadline - timestamp > 0) {
+                if (accessor.expire(leasePrefix + workerId, token, leaseTimeout, TimeUnit.MILLISECONDS)) {
+                    leaseDeadline = timestamp + TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+                    return;
+                }
+            }
+            logger.warn("Lost the lease of worker id {}", workerId);
+            this.workerId = -1;
+            lease();
+        } catch (Throwable t) {
+            logger.error("Failed to renew the lease of worker id {}", workerId, t);
+        }
+    }
+}
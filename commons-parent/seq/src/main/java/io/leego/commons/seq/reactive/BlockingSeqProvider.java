@@ -0,0 +1,44 @@
+package io.leego.commons.seq.reactive;
+
+import io.leego.commons.seq.provider.Segment;
+import io.leego.commons.seq.provider.SeqProvider;
+
+/**
+ * A {@link SeqProvider} that blocks on a {@link ReactiveSeqProvider},
+ * so that the reactive provider can be used by {@link io.leego.commons.seq.client.CachedSeq},
+ * whose segments are obtained by its own threads rather than the event loop.
+ *
+ * @author Leego Yih
+ */
+public class BlockingSeqProvider implements SeqProvider {
+    private final ReactiveSeqProvider provider;
+
+    public BlockingSeqProvider(ReactiveSeqProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public long next(String key) {
+        return this.next(key, 1).getValue();
+    }
+
+    @Override
+    public Segment next(String key, int size) {
+        return provider.next(key, size).block();
+    }
+
+    @Override
+    public boolean create(String key, long value, int increment) {
+        return Boolean.TRUE.equals(provider.create(key, value, increment).block());
+    }
+
+    @Override
+    public boolean update(String key, int increment) {
+        return Boolean.TRUE.equals(provider.update(key, increment).block());
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return Boolean.TRUE.equals(provider.contains(key).block());
+    }
+}
@@ -0,0 +1,243 @@
+package io.leego.commons.seq.reactive;
+
+import io.leego.commons.seq.exception.SeqErrorException;
+import io.leego.commons.seq.exception.SeqNotFoundException;
+import io.leego.commons.seq.provider.Segment;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A provider that stores sequences in a table through R2DBC, sharing the table with
+ * {@link io.leego.commons.seq.provider.DataSourceSeqProvider}.
+ * <p>
+ * A sequence is queried and then updated with compare-and-set, conflicts are retried
+ * with jittered exponential backoff, which never blocks the subscribing thread.
+ * <p>
+ * Statements are written with {@code ?} markers, which are translated to {@code $1, $2, ...}
+ * for the drivers of PostgreSQL and H2.
+ * The table should be created by subscribing {@link #init()} before obtaining any sequence.
+ *
+ * @author Leego Yih
+ */
+public class R2dbcSeqProvider implements ReactiveSeqProvider {
+    private static final Logger logger = LoggerFactory.getLogger(R2dbcSeqProvider.class);
+    private static final String TABLE_NAME = "seq";
+    private static final String INIT_SQL = """
+            create table if not exists %s (
+            id        varchar(64) primary key not null,
+            value     bigint default 0        not null,
+            increment int    default 1        not null,
+            version   int    default 1        not null)""";
+    private static final String QUERY_SQL = "select id, value, increment, version from %s where id = ?";
+    private static final String EXISTS_SQL = "select 1 from %s where id = ?";
+    private static final String INSERT_SQL = "insert into %s (id, value, increment, version) values (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "update %s set increment = ?, version = version + 1 where id = ?";
+    private static final String CAS_SQL = "update %s set value = ? where id = ? and value = ? and version = ?";
+    /** The base of the backoff in milliseconds. */
+    private static final long BACKOFF_BASE = 1;
+    /** The maximum of the backoff in milliseconds. */
+    private static final long BACKOFF_MAX = 100;
+    private final ConnectionFactory connectionFactory;
+    private final int retries;
+    private final String tableName;
+    private final String initSql;
+    private final String querySql;
+    private final String existsSql;
+    private final String insertSql;
+    private final String updateSql;
+    private final String casSql;
+    private final LongAdder retryCount = new LongAdder();
+
+    public R2dbcSeqProvider(ConnectionFactory connectionFactory) {
+        this(connectionFactory, TABLE_NAME, 10);
+    }
+
+    public R2dbcSeqProvider(ConnectionFactory connectionFactory, int retries) {
+        this(connectionFactory, TABLE_NAME, retries);
+    }
+
+    public R2dbcSeqProvider(ConnectionFactory connectionFactory, String tableName, int retries) {
+        if (retries < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.connectionFactory = connectionFactory;
+        this.retries = retries;
+        this.tableName = tableName;
+        String name = connectionFactory.getMetadata().getName().toLowerCase(Locale.ROOT);
+        boolean indexed = name.contains("postgresql") || name.contains("h2");
+        this.initSql = INIT_SQL.formatted(tableName);
+        this.querySql = translate(QUERY_SQL.formatted(tableName), indexed);
+        this.existsSql = translate(EXISTS_SQL.formatted(tableName), indexed);
+        this.insertSql = translate(INSERT_SQL.formatted(tableName), indexed);
+        this.updateSql = translate(UPDATE_SQL.formatted(tableName), indexed);
+        this.casSql = translate(CAS_SQL.formatted(tableName), indexed);
+    }
+
+    /**
+     * Creates the table if it does not exist.
+     *
+     * @return completes once the table is created.
+     */
+    public Mono<Void> init() {
+        return Mono.usingWhen(connectionFactory.create(),
+                        connection -> execute(connection.createStatement(initSql)),
+                        Connection::close)
+                .onErrorMap(e -> new SeqErrorException("Failed to init", e))
+                .then();
+    }
+
+    @Override
+    public Mono<Segment> next(String key, int size) {
+        if (size <= 0) {
+            return Mono.error(new IllegalArgumentException("Invalid size"));
+        }
+        long timestamp = System.currentTimeMillis();
+        return Mono.usingWhen(connectionFactory.create(),
+                        connection -> cas(connection, key, size, 0),
+                        Connection::close)
+                .switchIfEmpty(Mono.error(() -> new SeqErrorException(
+                        "Failed to modify seq '%s' after retrying %d %s in %d ms".formatted(key, retries, (retries == 1 ? "time" : "times"), System.currentTimeMillis() - timestamp))))
+                .onErrorMap(e -> !(e instanceof SeqErrorException || e instanceof SeqNotFoundException),
+                        e -> new SeqErrorException("Failed to modify seq '" + key + "'", e));
+    }
+
+    @Override
+    public Mono<Boolean> create(String key, long value, int increment) {
+        return Mono.usingWhen(connectionFactory.create(),
+                        connection -> exists(connection, key).flatMap(exists -> exists
+                                ? Mono.just(true)
+                                : execute(connection.createStatement(insertSql)
+                                .bind(0, key)
+                                .bind(1, value)
+                                .bind(2, increment)
+                                .bind(3, 1))
+                                .map(affectedRows -> affectedRows > 0)),
+                        Connection::close)
+                .onErrorMap(e -> new SeqErrorException("Failed to create seq '" + key + "'", e));
+    }
+
+    @Override
+    public Mono<Boolean> update(String key, int increment) {
+        return Mono.usingWhen(connectionFactory.create(),
+                        connection -> execute(connection.createStatement(updateSql)
+                                .bind(0, increment)
+                                .bind(1, key))
+                                .map(affectedRows -> affectedRows > 0),
+                        Connection::close)
+                .onErrorMap(e -> new SeqErrorException("Failed to update seq '" + key + "'", e));
+    }
+
+    @Override
+    public Mono<Boolean> contains(String key) {
+        return Mono.usingWhen(connectionFactory.create(),
+                        connection -> exists(connection, key),
+                        Connection::close)
+                .onErrorMap(e -> new SeqErrorException("Failed to query seq '" + key + "'", e));
+    }
+
+    /**
+     * Returns the number of retries caused by conflicts since this provider was created.
+     *
+     * @return the number of retries.
+     */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /** Queries and CAS the sequence, completes empty if it could not be CAS after retrying. */
+    private Mono<Segment> cas(Connection connection, String key, int size, int attempt) {
+        return query(connection, key).flatMap(seq -> {
+            long newValue = seq.value + (long) seq.increment * size;
+            return execute(connection.createStatement(casSql)
+                    .bind(0, newValue)
+                    .bind(1, key)
+                    .bind(2, seq.value)
+                    .bind(3, seq.version))
+                    .flatMap(affectedRows -> {
+                        if (affectedRows > 0) {
+                            return Mono.just(new Segment(seq.value + seq.increment, seq.increment, size));
+                        }
+                        int i = attempt + 1;
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Could not CAS seq '{}' {} {}, expectedValue: {}, newValue: {}, increment: {}, version: {}",
+                                    key, i, (i == 1 ? "time" : "times"), seq.value, newValue, seq.increment, seq.version);
+                        }
+                        if (i >= retries) {
+                            return Mono.empty();
+                        }
+                        retryCount.increment();
+                        return Mono.delay(backoff(i)).then(Mono.defer(() -> cas(connection, key, size, i)));
+                    });
+        });
+    }
+
+    private Mono<Seq> query(Connection connection, String key) {
+        return Mono.from(connection.createStatement(querySql).bind(0, key).execute())
+                .flatMap(result -> Mono.from(result.map((row, metadata) -> new Seq(
+                        row.get(1, Long.class),
+                        row.get(2, Integer.class),
+                        row.get(3, Integer.class)))))
+                .switchIfEmpty(Mono.error(() -> new SeqNotFoundException("Missing '" + key + "'")));
+    }
+
+    private Mono<Boolean> exists(Connection connection, String key) {
+        return Mono.from(connection.createStatement(existsSql).bind(0, key).execute())
+                .flatMap(result -> Mono.from(result.map((row, metadata) -> true)))
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Long> execute(Statement statement) {
+        return Mono.from(statement.execute())
+                .flatMap(result -> Mono.from(result.getRowsUpdated()))
+                .defaultIfEmpty(0L);
+    }
+
+    /** Returns a random delay up to the exponential backoff of the given attempt. */
+    private Duration backoff(int attempt) {
+        long bound = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt, 16));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(bound + 1));
+    }
+
+    /** Translates the {@code ?} markers to indexed ones if necessary. */
+    private static String translate(String sql, boolean indexed) {
+        if (!indexed) {
+            return sql;
+        }
+        StringBuilder sb = new StringBuilder(sql.length() + 8);
+        int index = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                sb.append('$').append(++index);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Seq {
+        final long value;
+        final int increment;
+        final int version;
+
+        Seq(long value, int increment, int version) {
+            this.value = value;
+            this.increment = increment;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.leego.commons.seq.reactive;
+
+import io.leego.commons.seq.client.SeqClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link SeqClient} adapted to Reactor, which never blocks the subscribing thread
+ * as long as {@link SeqClient#nextAsync(String)} does not block.
+ *
+ * @author Leego Yih
+ */
+public class ReactiveSeqClient {
+    private final SeqClient client;
+
+    public ReactiveSeqClient(SeqClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Obtains the next sequence.
+     *
+     * @param key the sequence key.
+     * @return the next sequence.
+     */
+    public Mono<Long> next(String key) {
+        return Mono.fromFuture(() -> client.nextAsync(key));
+    }
+
+    /**
+     * Obtains the next sequences in order.
+     *
+     * @param key  the sequence key.
+     * @param size the size.
+     * @return the next sequences.
+     */
+    public Flux<Long> next(String key, int size) {
+        if (size <= 0) {
+            return Flux.error(new IllegalArgumentException("Invalid size"));
+        }
+        return Flux.range(0, size).concatMap(i -> next(key));
+    }
+
+    public SeqClient getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,51 @@
+package io.leego.commons.seq.reactive;
+
+import io.leego.commons.seq.exception.SeqNotFoundException;
+import io.leego.commons.seq.provider.Segment;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking counterpart of {@link io.leego.commons.seq.provider.SeqProvider}.
+ *
+ * @author Leego Yih
+ */
+public interface ReactiveSeqProvider {
+
+    /**
+     * Returns the next segment.
+     *
+     * @param key  the key of the sequence.
+     * @param size the size to be obtained
+     * @return the next segment, or an error of {@link IllegalArgumentException} if the size is negative,
+     * or {@link SeqNotFoundException} if the sequence is missing.
+     */
+    Mono<Segment> next(String key, int size);
+
+    /**
+     * Creates a sequence.
+     *
+     * @param key       the key of the sequence.
+     * @param value     the initialized value of the sequence.
+     * @param increment the increment of the sequence.
+     * @return {@code true} if the sequence is created.
+     */
+    Mono<Boolean> create(String key, long value, int increment);
+
+    /**
+     * Updates a sequence.
+     *
+     * @param key       the key of the sequence.
+     * @param increment the increment of the sequence.
+     * @return {@code true} if the sequence is updated.
+     */
+    Mono<Boolean> update(String key, int increment);
+
+    /**
+     * Returns {@code true} if this provider contains a sequence for the specified key.
+     *
+     * @param key the key of the sequence.
+     * @return {@code true} if this provider contains a sequence for the specified key.
+     */
+    Mono<Boolean> contains(String key);
+
+}
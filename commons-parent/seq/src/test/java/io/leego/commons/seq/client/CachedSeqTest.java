@@ -0,0 +1,165 @@
+package io.leego.commons.seq.client;
+
+import io.leego.commons.seq.provider.MemorySeqProvider;
+import io.leego.commons.seq.provider.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class CachedSeqTest {
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 500;
+    private final BlockSeqProvider provider = new BlockSeqProvider(8);
+
+    CachedSeqTest() {
+        provider.create("key");
+    }
+
+    /** Requests larger than the provider allows are obtained in several segments. */
+    @Test
+    void nextArrayBeyondMaxSize() {
+        CachedSeq seq = new CachedSeq(provider, "key", 8, 0.5F, 1000);
+        long[] array = seq.nextArray(20);
+        assertEquals(20, array.length);
+        assertEquals(20, Arrays.stream(array).distinct().count());
+        assertThrows(IllegalArgumentException.class, () -> seq.nextSegment(20));
+    }
+
+    @Test
+    void rejectSegmentsBeyondMaxSize() {
+        assertThrows(IllegalArgumentException.class, () -> new CachedSeq(provider, "key", 16, 1F, 1000, 0.5F));
+        CachedSeqProperties properties = new CachedSeqProperties(8, 0.5F, Duration.ofSeconds(1), 0F);
+        properties.setAdaptive(true);
+        properties.setMinCapacity(4);
+        properties.setMaxCapacity(16);
+        assertThrows(IllegalArgumentException.class, () -> new CachedSeqClient(provider, properties));
+    }
+
+    /** Without prefetching, the ranges are appended to the list while consumers claim from it. */
+    @Test
+    void noDuplicatesInRanges() throws Exception {
+        assertUnique(new CachedSeq(provider, "key", 8, 0.5F, 1000));
+    }
+
+    /** With prefetching, the standby segment is obtained while the current one is consumed. */
+    @Test
+    void noDuplicatesWithDoubleBuffering() throws Exception {
+        assertUnique(new CachedSeq(provider, "key", 8, 0.5F, 1000, 0.5F));
+    }
+
+    @Test
+    void noDuplicatesInStripes() throws Exception {
+        CachedSeqProperties properties = new CachedSeqProperties(8, 0.5F, Duration.ofSeconds(1), 0F);
+        properties.setStripes(4);
+        properties.setStripeSize(4);
+        assertUnique(new CachedSeq(provider, "key", properties));
+    }
+
+    /** Evicted sequences give their unused tails back to the provider, so that they are obtained again. */
+    @Test
+    void releaseOnEvict() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        MemorySeqProvider provider = new MemorySeqProvider() {
+            @Override
+            public boolean release(String key, Segment segment) {
+                boolean result = super.release(key, segment);
+                if (result && key.equals("a")) {
+                    released.countDown();
+                }
+                return result;
+            }
+        };
+        provider.create("a");
+        provider.create("b");
+        CachedSeqProperties properties = new CachedSeqProperties(10, 1F, Duration.ofSeconds(1), 0F);
+        properties.setMaxSize(1);
+        try (CachedSeqClient client = new CachedSeqClient(provider, properties)) {
+            assertEquals(1, client.next("a"));
+            // Marks "a" active now, so that it is the one idle for the longest once "b" is created.
+            client.sweep();
+            Thread.sleep(20);
+            assertEquals(1, client.next("b"));
+            assertTrue(released.await(10, TimeUnit.SECONDS));
+            assertEquals(2, provider.next("a"));
+            assertEquals(1, client.getSeqs().size());
+        }
+    }
+
+    /** Obtains sequences one at a time, in arrays and in segments from several threads, none of which is obtained twice. */
+    private static void assertUnique(CachedSeq seq) throws Exception {
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                int t = i;
+                futures[i] = executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int j = 0; j < REQUESTS; j++) {
+                        long[] array = switch ((t + j) % 3) {
+                            case 0 -> new long[]{seq.next()};
+                            case 1 -> seq.nextArray(3);
+                            default -> seq.nextSegment(2).toArray();
+                        };
+                        count.addAndGet(array.length);
+                        for (long v : array) {
+                            if (!values.add(v)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(count.get(), values.size());
+    }
+
+    /** A provider which hands out at most {@code maxSize} sequences at once, like the blocks of a native sequence. */
+    static class BlockSeqProvider extends MemorySeqProvider {
+        private final int maxSize;
+
+        BlockSeqProvider(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public Segment next(String key, int size) {
+            if (size > maxSize) {
+                throw new IllegalArgumentException("Invalid size");
+            }
+            return super.next(key, size);
+        }
+
+        @Override
+        public int getMaxSize() {
+            return maxSize;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.leego.commons.seq.client;
+
+import io.leego.commons.seq.provider.Segment;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Leego Yih
+ */
+class SeqTest {
+
+    /** An implementation written before the bulk and asynchronous methods were added, which only implements the original ones. */
+    @Test
+    void defaults() throws Exception {
+        AtomicLong counter = new AtomicLong();
+        Seq seq = new Seq() {
+            @Override
+            public long next() {
+                return counter.addAndGet(2);
+            }
+
+            @Override
+            public LinkedList<Long> next(int size) {
+                return next(size, LinkedList::new);
+            }
+
+            @Override
+            public <C extends Collection<Long>> C next(int size, Supplier<C> collectionFactory) {
+                C c = collectionFactory.get();
+                for (int i = 0; i < size; i++) {
+                    c.add(next());
+                }
+                return c;
+            }
+        };
+        assertEquals(2, (long) seq.nextAsync().get());
+        assertEquals(4 + 6 + 8, seq.nextStream(3).sum());
+        assertEquals(new Segment(10, 2, 3), seq.nextSegment(3));
+        assertEquals(16, seq.nextArray(1)[0]);
+        assertThrows(IllegalArgumentException.class, () -> Segment.of(new long[]{1, 2, 4}));
+    }
+}
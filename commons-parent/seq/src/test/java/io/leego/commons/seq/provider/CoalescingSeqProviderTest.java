@@ -0,0 +1,95 @@
+package io.leego.commons.seq.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class CoalescingSeqProviderTest {
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 50;
+    private final SlowSeqProvider delegate = new SlowSeqProvider();
+
+    /** Concurrent requests share the calls to the delegate, whose segments are split without overlapping. */
+    @Test
+    void coalesce() throws Exception {
+        CoalescingSeqProvider provider = new CoalescingSeqProvider(delegate, 12);
+        provider.create("key");
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int i = 0; i < THREADS; i++) {
+                futures[i] = executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int j = 0; j < REQUESTS; j++) {
+                        Segment segment = provider.next("key", 3);
+                        assertEquals(3, segment.getSize());
+                        for (long v : segment.toArray()) {
+                            if (!values.add(v)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(THREADS * REQUESTS * 3, values.size());
+        assertTrue(delegate.calls.get() < THREADS * REQUESTS, "calls: " + delegate.calls.get());
+        assertTrue(delegate.maxSize.get() <= 12, "max size: " + delegate.maxSize.get());
+    }
+
+    @Test
+    void failAll() {
+        CoalescingSeqProvider provider = new CoalescingSeqProvider(delegate);
+        assertThrows(RuntimeException.class, () -> provider.next("missing", 1));
+    }
+
+    @Test
+    void maxSizeOfDelegate() {
+        NativeSeqProvider nativeProvider = new NativeSeqProvider(new StubDataSource().dataSource(), 8);
+        assertEquals(8, new CoalescingSeqProvider(nativeProvider).getMaxSize());
+        assertEquals(4, new CoalescingSeqProvider(nativeProvider, 4).getMaxSize());
+    }
+
+    /** A delegate with a round trip of a millisecond, which counts the calls. */
+    static class SlowSeqProvider extends MemorySeqProvider {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger maxSize = new AtomicInteger();
+
+        @Override
+        public Segment next(String key, int size) {
+            calls.incrementAndGet();
+            maxSize.accumulateAndGet(size, Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.next(key, size);
+        }
+    }
+}
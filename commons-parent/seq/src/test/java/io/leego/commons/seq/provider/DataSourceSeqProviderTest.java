@@ -0,0 +1,117 @@
+package io.leego.commons.seq.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class DataSourceSeqProviderTest {
+    private final StubDataSource database = new StubDataSource();
+    private final DataSourceSeqProvider provider = new DataSourceSeqProvider(database.dataSource(), "seq", 100);
+
+    @Test
+    void next() {
+        assertTrue(provider.create("key", 0, 2));
+        assertEquals(new Segment(2, 2, 3), provider.next("key", 3));
+        assertEquals(new Segment(8, 2, 2), provider.next("key", 2));
+        assertEquals(10, database.value("key"));
+    }
+
+    @Test
+    void retryConflict() {
+        provider.create("key");
+        database.interferences.set(1);
+        assertEquals(new Segment(2, 1, 3), provider.next("key", 3));
+        assertEquals(1, provider.getRetryCount());
+    }
+
+    @Test
+    void release() {
+        provider.create("key");
+        provider.next("key", 5);
+        assertTrue(provider.release("key", new Segment(3, 1, 3)));
+        assertEquals(3, provider.next("key", 1).getValue());
+    }
+
+    /** The sequences which could not be CAS in a batch are retried in the next round of batches. */
+    @Test
+    void nextInBatch() {
+        provider.create("a");
+        provider.create("b");
+        database.interferences.set(1);
+        Map<String, Segment> segments = provider.next(sizes());
+        assertEquals(new Segment(2, 1, 2), segments.get("a"));
+        assertEquals(new Segment(1, 1, 3), segments.get("b"));
+        assertEquals(2, database.batches.get());
+        assertEquals(1, provider.getRetryCount());
+    }
+
+    /** A driver that does not report the update counts of batches is detected once, and then never batched again. */
+    @Test
+    void nextInBatchWithoutUpdateCounts() {
+        provider.create("a");
+        provider.create("b");
+        database.batchNoInfo = true;
+        Map<String, Segment> segments = provider.next(sizes());
+        assertEquals(new Segment(1, 1, 2), segments.get("a"));
+        assertEquals(new Segment(1, 1, 3), segments.get("b"));
+        assertEquals(2, database.value("a"));
+        assertEquals(3, database.value("b"));
+        segments = provider.next(sizes());
+        assertEquals(new Segment(3, 1, 2), segments.get("a"));
+        assertEquals(new Segment(4, 1, 3), segments.get("b"));
+        assertEquals(1, database.batches.get());
+    }
+
+    @Test
+    void noDuplicatesUnderContention() throws Exception {
+        provider.create("key");
+        Set<Long> values = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        // Another node writes now and then.
+                        if (j % 10 == 0) {
+                            database.interferences.incrementAndGet();
+                        }
+                        for (long v : provider.next("key", 5).toArray()) {
+                            if (!values.add(v)) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(2000, values.size());
+    }
+
+    private static Map<String, Integer> sizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        sizes.put("a", 2);
+        sizes.put("b", 3);
+        return sizes;
+    }
+}
@@ -0,0 +1,86 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.seq.exception.SeqErrorException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class MappedFileSeqProviderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void next() {
+        try (MappedFileSeqProvider provider = new MappedFileSeqProvider(dir.resolve("seq"), 16, 100)) {
+            assertTrue(provider.create("key", 0, 2));
+            assertEquals(2, provider.next("key"));
+            Segment segment = provider.next("key", 3);
+            assertEquals(4, segment.getValue());
+            assertEquals(2, segment.getIncrement());
+            assertEquals(3, segment.getSize());
+            assertEquals(10, provider.next("key"));
+        }
+    }
+
+    /** Sequences continue from the high-water mark after reopening, so that none is reissued. */
+    @Test
+    void reopen() {
+        Path path = dir.resolve("seq");
+        long last;
+        try (MappedFileSeqProvider provider = new MappedFileSeqProvider(path, 16, 100)) {
+            provider.create("key");
+            for (int i = 0; i < 150; i++) {
+                provider.next("key");
+            }
+            last = provider.next("key");
+        }
+        try (MappedFileSeqProvider provider = new MappedFileSeqProvider(path, 16, 100)) {
+            assertTrue(provider.contains("key"));
+            assertTrue(provider.next("key") > last);
+        }
+    }
+
+    /** A file grown by mapping before the magic was written is initialized again. */
+    @Test
+    void recoverZeroFilledFile() throws IOException {
+        Path path = dir.resolve("seq");
+        Files.write(path, new byte[64 + 96 * 16]);
+        try (MappedFileSeqProvider provider = new MappedFileSeqProvider(path, 16, 100)) {
+            provider.create("key");
+            assertEquals(1, provider.next("key"));
+        }
+        try (MappedFileSeqProvider provider = new MappedFileSeqProvider(path, 16, 100)) {
+            assertTrue(provider.next("key") > 1);
+        }
+    }
+
+    @Test
+    void rejectForeignFile() throws IOException {
+        Path path = dir.resolve("seq");
+        byte[] bytes = new byte[128];
+        bytes[0] = 1;
+        Files.write(path, bytes);
+        assertThrows(SeqErrorException.class, () -> new MappedFileSeqProvider(path, 16, 100));
+    }
+
+    @Test
+    void rejectAfterClose() {
+        MappedFileSeqProvider provider = new MappedFileSeqProvider(dir.resolve("seq"), 16, 100);
+        provider.create("key");
+        provider.close();
+        provider.close();
+        assertTrue(provider.isClosed());
+        assertThrows(SeqErrorException.class, () -> provider.next("key"));
+        assertThrows(SeqErrorException.class, () -> provider.create("other"));
+    }
+}
@@ -0,0 +1,46 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.seq.client.CachedSeq;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class NativeSeqProviderTest {
+    private final NativeSeqProvider provider = new NativeSeqProvider(new StubDataSource().dataSource(), 10);
+
+    /** A segment is taken from a single block, and the rest of the block is skipped. */
+    @Test
+    void next() {
+        assertEquals(NativeSeqProvider.Dialect.H2, provider.getDialect());
+        assertTrue(provider.create("key"));
+        assertEquals(new Segment(1, 1, 4), provider.next("key", 4));
+        assertEquals(new Segment(11, 1, 10), provider.next("key", 10));
+        assertThrows(IllegalArgumentException.class, () -> provider.next("key", 11));
+        assertEquals(10, provider.getMaxSize());
+    }
+
+    /** The blocks with the new increment start after a skipped block, so they never overlap the blocks handed out before. */
+    @Test
+    void update() {
+        provider.create("key");
+        assertEquals(new Segment(1, 1, 10), provider.next("key", 10));
+        assertTrue(provider.update("key", 2));
+        assertEquals(new Segment(21, 2, 10), provider.next("key", 10));
+    }
+
+    /** The sequences obtained beyond the block size are taken from several blocks. */
+    @Test
+    void nextArrayOfCachedSeq() {
+        provider.create("key");
+        CachedSeq seq = new CachedSeq(provider, "key", 10, 1F, 1000);
+        long[] array = seq.nextArray(25);
+        assertEquals(25, Arrays.stream(array).distinct().count());
+    }
+}
@@ -0,0 +1,76 @@
+package io.leego.commons.seq.provider;
+
+import io.leego.commons.lock.MemoryDistributedAccessor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class SnowflakeSeqProviderTest {
+    private final MemoryDistributedAccessor accessor = new MemoryDistributedAccessor();
+
+    @Test
+    void rejectLeaseTimeoutWithinMaxBackward() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeSeqProvider(accessor, "worker:", Duration.ofSeconds(1),
+                0, 1, 1, Duration.ofSeconds(1)));
+    }
+
+    /** Milliseconds borrowed ahead of the clock stay leased after closing, until the clock passes them. */
+    @Test
+    void closeKeepsLeaseAhead() throws InterruptedException {
+        long workerId;
+        try (SnowflakeSeqProvider provider = new SnowflakeSeqProvider(accessor, "worker:", Duration.ofSeconds(10),
+                0, 1, 1, Duration.ofSeconds(5))) {
+            provider.create("key", 0, 1);
+            workerId = provider.getWorkerId();
+            // Two sequences per millisecond, so that the timestamps run ahead of the clock by hundreds of milliseconds.
+            for (int i = 0; i < 500; i++) {
+                provider.next("key", 2);
+            }
+        }
+        assertFalse(accessor.setIfAbsent("worker:" + workerId, "other", 10, TimeUnit.SECONDS));
+        Thread.sleep(1000);
+        assertTrue(accessor.setIfAbsent("worker:" + workerId, "other", 10, TimeUnit.SECONDS));
+    }
+
+    /** Timestamps borrowed ahead of the clock never exceed {@code maxBackward}, so generating waits for the clock instead. */
+    @Test
+    void borrowWithinMaxBackward() {
+        try (SnowflakeSeqProvider provider = new SnowflakeSeqProvider(accessor, "worker:", Duration.ofSeconds(10),
+                0, 1, 1, Duration.ofMillis(50))) {
+            provider.create("key", 0, 1);
+            long start = System.currentTimeMillis();
+            long last = -1;
+            for (int i = 0; i < 400; i++) {
+                Segment segment = provider.next("key", 2);
+                assertEquals(2, segment.getSize());
+                assertTrue(segment.getValue() > last);
+                last = segment.getValue() + 1;
+            }
+            // 400 milliseconds are needed, of which at most 50 are borrowed.
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(elapsed >= 300, "elapsed: " + elapsed);
+            assertTrue((last >>> 2) - System.currentTimeMillis() <= 50);
+        }
+    }
+
+    @Test
+    void closeReleasesLease() throws InterruptedException {
+        long workerId;
+        try (SnowflakeSeqProvider provider = new SnowflakeSeqProvider(accessor)) {
+            provider.create("key", 0, 1);
+            provider.next("key");
+            workerId = provider.getWorkerId();
+            Thread.sleep(2);
+        }
+        assertTrue(accessor.setIfAbsent("seq:worker:" + workerId, "other", 10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,213 @@
+package io.leego.commons.seq.provider;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory data source which understands the statements of {@link DataSourceSeqProvider} on the table {@code seq},
+ * and the statements of {@link NativeSeqProvider} with the H2 dialect, so that the providers are tested without a database.
+ * Statements are executed one at a time, and a transaction is rolled back by restoring the rows at its beginning.
+ *
+ * @author Leego Yih
+ */
+class StubDataSource {
+    private static final Pattern CREATE_SEQUENCE = Pattern.compile("create sequence (\\w+) start with (-?\\d+) increment by (\\d+).*");
+    private static final Pattern ALTER_SEQUENCE = Pattern.compile("alter sequence (\\w+) increment by (\\d+)");
+    private static final Pattern NEXT_VALUE = Pattern.compile("select next value for (\\w+)");
+    /** The rows of the table, each of which is {@code [value, increment, version]}. */
+    private final Map<String, long[]> rows = new HashMap<>();
+    /** The native sequences, each of which is {@code [next value, step]}. */
+    private final Map<String, long[]> sequences = new HashMap<>();
+    /** Whether batches report {@link Statement#SUCCESS_NO_INFO} and leave the rows untouched, like some rewriting drivers. */
+    volatile boolean batchNoInfo;
+    /** The number of the next CAS statements which another node writes the row just before. */
+    final AtomicInteger interferences = new AtomicInteger();
+    /** The number of executed batches. */
+    final AtomicInteger batches = new AtomicInteger();
+    private Map<String, long[]> snapshot;
+
+    DataSource dataSource() {
+        return proxy(DataSource.class, (method, args) -> method.getName().equals("getConnection") ? connection() : null);
+    }
+
+    synchronized long value(String id) {
+        return rows.get(id)[0];
+    }
+
+    private Connection connection() {
+        boolean[] autoCommit = {true};
+        return proxy(Connection.class, (method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> statement((String) args[0]);
+            case "createStatement" -> statement(null);
+            case "getMetaData" -> proxy(DatabaseMetaData.class, (m, a) -> m.getName().equals("getDatabaseProductName") ? "H2" : null);
+            case "getAutoCommit" -> autoCommit[0];
+            case "setAutoCommit" -> {
+                if (autoCommit[0] && !(boolean) args[0]) {
+                    begin();
+                }
+                autoCommit[0] = (boolean) args[0];
+                yield null;
+            }
+            case "rollback" -> {
+                rollback();
+                yield null;
+            }
+            default -> null;
+        });
+    }
+
+    private PreparedStatement statement(String sql) {
+        Map<Integer, Object> params = new HashMap<>();
+        List<Map<Integer, Object>> batch = new ArrayList<>();
+        return proxy(PreparedStatement.class, (method, args) -> switch (method.getName()) {
+            case "setString", "setLong", "setInt" -> {
+                params.put((Integer) args[0], args[1]);
+                yield null;
+            }
+            case "addBatch" -> {
+                batch.add(new HashMap<>(params));
+                yield null;
+            }
+            case "executeBatch" -> executeBatch(sql, batch);
+            case "executeUpdate" -> update(args != null && args.length > 0 ? (String) args[0] : sql, params);
+            case "executeQuery" -> query(sql, params);
+            default -> null;
+        });
+    }
+
+    private synchronized int[] executeBatch(String sql, List<Map<Integer, Object>> batch) {
+        batches.incrementAndGet();
+        int[] counts = new int[batch.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = batchNoInfo ? Statement.SUCCESS_NO_INFO : update(sql, batch.get(i));
+        }
+        return counts;
+    }
+
+    private synchronized int update(String sql, Map<Integer, Object> p) {
+        Matcher matcher;
+        if (sql.startsWith("create table")) {
+            return 0;
+        } else if ((matcher = CREATE_SEQUENCE.matcher(sql)).matches()) {
+            sequences.put(matcher.group(1), new long[]{Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3))});
+            return 0;
+        } else if ((matcher = ALTER_SEQUENCE.matcher(sql)).matches()) {
+            sequences.get(matcher.group(1))[1] = Long.parseLong(matcher.group(2));
+            return 0;
+        } else if (sql.startsWith("insert into seq")) {
+            return rows.putIfAbsent(string(p, 1), new long[]{number(p, 2), number(p, 3), number(p, 4)}) == null ? 1 : 0;
+        }
+        long[] row = rows.get(string(p, 2));
+        if (row == null) {
+            return 0;
+        }
+        if (sql.startsWith("update seq set increment = ?")) {
+            row[1] = number(p, 1);
+            row[2]++;
+        } else if (sql.endsWith("and version = ?")) {
+            if (interferences.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                row[0] += row[1];
+            }
+            if (row[0] != number(p, 3) || row[2] != number(p, 4)) {
+                return 0;
+            }
+            row[0] = number(p, 1);
+        } else if (sql.endsWith("and increment = ?")) {
+            if (row[0] != number(p, 3) || row[1] != number(p, 4)) {
+                return 0;
+            }
+            row[0] = number(p, 1);
+        } else {
+            throw new UnsupportedOperationException(sql);
+        }
+        return 1;
+    }
+
+    private synchronized ResultSet query(String sql, Map<Integer, Object> p) {
+        List<Object[]> result = new ArrayList<>();
+        Matcher matcher;
+        if ((matcher = NEXT_VALUE.matcher(sql)).matches()) {
+            long[] sequence = sequences.get(matcher.group(1));
+            result.add(new Object[]{sequence[0]});
+            sequence[0] += sequence[1];
+        } else if (sql.startsWith("select 1 from information_schema.sequences")) {
+            if (sequences.containsKey(string(p, 1))) {
+                result.add(new Object[]{1});
+            }
+        } else if (sql.startsWith("select increment from information_schema.sequences")) {
+            long[] sequence = sequences.get(string(p, 1));
+            if (sequence != null) {
+                result.add(new Object[]{sequence[1]});
+            }
+        } else if (sql.startsWith("select 1 from seq")) {
+            if (rows.containsKey(string(p, 1))) {
+                result.add(new Object[]{1});
+            }
+        } else if (sql.startsWith("select count(*) from seq")) {
+            result.add(new Object[]{0});
+        } else if (sql.startsWith("select id, value, increment, version from seq")) {
+            for (Object id : new LinkedHashSet<>(p.values())) {
+                long[] row = rows.get((String) id);
+                if (row != null) {
+                    result.add(new Object[]{id, row[0], row[1], row[2]});
+                }
+            }
+        } else {
+            throw new UnsupportedOperationException(sql);
+        }
+        int[] cursor = {-1};
+        return proxy(ResultSet.class, (method, args) -> switch (method.getName()) {
+            case "next" -> ++cursor[0] < result.size();
+            case "getString" -> (String) result.get(cursor[0])[(Integer) args[0] - 1];
+            case "getLong" -> ((Number) result.get(cursor[0])[(Integer) args[0] - 1]).longValue();
+            case "getInt" -> ((Number) result.get(cursor[0])[(Integer) args[0] - 1]).intValue();
+            default -> null;
+        });
+    }
+
+    private synchronized void begin() {
+        snapshot = new HashMap<>();
+        rows.forEach((id, row) -> snapshot.put(id, row.clone()));
+    }
+
+    private synchronized void rollback() {
+        rows.clear();
+        rows.putAll(snapshot);
+    }
+
+    private static String string(Map<Integer, Object> p, int i) {
+        return (String) p.get(i);
+    }
+
+    private static long number(Map<Integer, Object> p, int i) {
+        return ((Number) p.get(i)).longValue();
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : type.getSimpleName();
+            }
+            return handler.handle(method, args);
+        }));
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws SQLException;
+    }
+}
@@ -0,0 +1,129 @@
+package io.leego.commons.lock;
+
+/**
+ * A {@link DistributedLock} whose holders in the same process queue on a local lock first,
+ * so that only the head of the queue contends for the remote lock.
+ * <p>
+ * Once unlocked, the remote lock is handed over to the next local waiter directly instead of being released,
+ * unless the number of consecutive handoffs reaches the maximum of the table, which prevents the other processes from starving.
+ * The remote lock of a key is shared by all the holders in this process, whose lockout and retries are the ones of the first holder,
+ * and the retries only apply to the remote contention.
+ * <p>
+ * Like {@link DistributedLock}, it is not reentrant, a thread locking a key it already holds waits for itself.
+ *
+ * @author Leego Yih
+ */
+public class CoalescingDistributedLock extends DistributedLock {
+    private final LocalLockTable table;
+    private LocalLockTable.Slot slot;
+
+    CoalescingDistributedLock(LocalLockTable table, LeaseWatchdog watchdog, DistributedAccessor accessor, String key, long lockout, int retries) {
+        super(watchdog, accessor, key, lockout, retries);
+        this.table = table;
+    }
+
+    @Override
+    public void lock(long timeout) throws InterruptedException {
+        LocalLockTable.Slot slot = table.acquire(getKey(), this::newRemote);
+        boolean locked = false;
+        try {
+            slot.local.acquire();
+            try {
+                take(slot, timeout);
+                locked = true;
+            } finally {
+                if (!locked) {
+                    slot.local.release();
+                }
+            }
+        } finally {
+            if (!locked) {
+                leave(slot);
+            }
+        }
+        this.slot = slot;
+    }
+
+    @Override
+    public boolean tryLock(long timeout) {
+        LocalLockTable.Slot slot = table.acquire(getKey(), this::newRemote);
+        if (!slot.local.tryAcquire()) {
+            table.release(getKey(), slot);
+            return false;
+        }
+        boolean locked = slot.held && slot.remote.handOver(timeout);
+        if (!locked) {
+            if (slot.held) {
+                unlockRemote(slot);
+            }
+            locked = slot.remote.tryLock(timeout);
+            slot.held = locked;
+        }
+        if (!locked) {
+            slot.local.release();
+            table.release(getKey(), slot);
+            return false;
+        }
+        this.slot = slot;
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        LocalLockTable.Slot slot = this.slot;
+        if (slot == null) {
+            return;
+        }
+        this.slot = null;
+        try {
+            // Keeps the remote lock for the next local waiter.
+            if (slot.local.hasQueuedThreads() && slot.handoffs < table.getMaxHandoffs()) {
+                slot.handoffs++;
+            } else {
+                unlockRemote(slot);
+            }
+        } finally {
+            slot.local.release();
+            table.release(getKey(), slot);
+        }
+    }
+
+    /** Takes over the remote lock if it is held by this process, otherwise acquires it. */
+    private void take(LocalLockTable.Slot slot, long timeout) throws InterruptedException {
+        if (slot.held) {
+            if (slot.remote.handOver(timeout)) {
+                return;
+            }
+            unlockRemote(slot);
+        }
+        slot.remote.lock(timeout);
+        slot.held = true;
+    }
+
+    /**
+     * Releases the slot after giving up waiting. The remote lock may have been handed over to the waiter,
+     * in which case it is released unless another local waiter is queued.
+     */
+    private void leave(LocalLockTable.Slot slot) {
+        if (slot.local.tryAcquire()) {
+            try {
+                if (slot.held && !slot.local.hasQueuedThreads()) {
+                    unlockRemote(slot);
+                }
+            } finally {
+                slot.local.release();
+            }
+        }
+        table.release(getKey(), slot);
+    }
+
+    private void unlockRemote(LocalLockTable.Slot slot) {
+        slot.held = false;
+        slot.handoffs = 0;
+        slot.remote.unlock();
+    }
+
+    private DistributedLock newRemote() {
+        return new DistributedLock(getWatchdog(), getAccessor(), getKey(), getLockout(), getRetries());
+    }
+}
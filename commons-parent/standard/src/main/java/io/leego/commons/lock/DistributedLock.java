@@ -3,14 +3,28 @@ package io.leego.commons.lock;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * A lock whose lease is renewed until it is unlocked, either by the shared {@link LeaseWatchdog}
+ * of the {@link DistributedLockFactory}, or by a task of its own scheduled on the executor.
+ * <p>
+ * The lease is renewed with {@link ExpiringDistributedAccessor#expire(String, String, long, TimeUnit)},
+ * so the accessor must be an {@link ExpiringDistributedAccessor}, which is checked once the lock or the watchdog is created.
+ * If the accessor is a {@link NotifiableDistributedAccessor}, the waiters of {@link #lock()} wake up once the lock is released.
+ * Otherwise, or if a notification is missed, e.g. the lock expires, they retry after a jittered exponential backoff.
+ *
  * @author Leego Yih
  */
 public class DistributedLock {
+    /** The base of the backoff in milliseconds. */
+    private static final long BACKOFF_BASE = 10;
+    /** The maximum of the backoff in milliseconds. */
+    private static final long BACKOFF_MAX = 1000;
     private final ScheduledExecutorService executor;
+    private final LeaseWatchdog watchdog;
     private final DistributedAccessor accessor;
     private final String key;
     private final String value;
@@ -18,6 +32,7 @@ public class DistributedLock {
     private final int retries;
     private long expired;
     private ScheduledFuture<?> future;
+    private LeaseWatchdog.Lease lease;
 
     public DistributedLock(ScheduledExecutorService executor, DistributedAccessor accessor, String key) {
         this(executor, accessor, key, 5 * 1000, -1);
@@ -28,10 +43,39 @@ public class DistributedLock {
     }
 
     public DistributedLock(ScheduledExecutorService executor, DistributedAccessor accessor, String key, long lockout, int retries) {
+        this(executor, null, accessor, key, lockout, retries);
+    }
+
+    /**
+     * Creates a lock whose lease is renewed by the watchdog.
+     *
+     * @param watchdog the watchdog.
+     * @param accessor the accessor.
+     * @param key      the key of the lock.
+     * @param lockout  the time to live in milliseconds.
+     * @param retries  the number of retries of {@link #lock()}, {@code -1} means infinite.
+     */
+    public DistributedLock(LeaseWatchdog watchdog, DistributedAccessor accessor, String key, long lockout, int retries) {
+        this(null, watchdog, accessor, key, lockout, retries);
+    }
+
+    DistributedLock(LeaseWatchdog watchdog, DistributedAccessor accessor, String key, String value, long lockout, int retries) {
+        this(null, watchdog, accessor, key, value, lockout, retries);
+    }
+
+    private DistributedLock(ScheduledExecutorService executor, LeaseWatchdog watchdog, DistributedAccessor accessor, String key, long lockout, int retries) {
+        this(executor, watchdog, accessor, key, UUID.randomUUID().toString(), lockout, retries);
+    }
+
+    private DistributedLock(ScheduledExecutorService executor, LeaseWatchdog watchdog, DistributedAccessor accessor, String key, String value, long lockout, int retries) {
+        if (executor != null && !(accessor instanceof ExpiringDistributedAccessor)) {
+            throw new UnsupportedOperationException("The accessor does not support value-checked expiry: " + accessor.getClass().getName());
+        }
         this.executor = executor;
+        this.watchdog = watchdog;
         this.accessor = accessor;
         this.key = key;
-        this.value = UUID.randomUUID().toString();
+        this.value = value;
         this.lockout = lockout;
         this.retries = retries;
     }
@@ -55,13 +99,33 @@ public class DistributedLock {
      * lock has been acquired.
      */
     public void lock(long timeout) throws InterruptedException {
-        int count = 0;
-        while (retries < 0 || count < retries) {
-            if (tryLock(timeout)) {
-                return;
+        Semaphore released = null;
+        NotifiableDistributedAccessor.Subscription subscription = null;
+        try {
+            int count = 0;
+            while (retries < 0 || count < retries) {
+                if (tryLock(timeout)) {
+                    return;
+                }
+                if (subscription == null && accessor instanceof NotifiableDistributedAccessor notifiable) {
+                    // Subscribes once contended, then retries at once in case the lock was released in the meantime.
+                    released = new Semaphore(0);
+                    subscription = notifiable.subscribe(key, released::release);
+                    continue;
+                }
+                long backoff = backoff(count);
+                if (released != null) {
+                    released.tryAcquire(backoff, TimeUnit.MILLISECONDS);
+                    released.drainPermits();
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                }
+                count++;
+            }
+        } finally {
+            if (subscription != null) {
+                subscription.cancel();
             }
-            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(10, 100));
-            count++;
         }
         throw new InterruptedException();
     }
@@ -125,15 +189,18 @@ public class DistributedLock {
      * {@code false} otherwise
      */
     public boolean tryLock(long timeout) {
-        boolean locked = accessor.setIfAbsent(key, value, lockout, TimeUnit.MILLISECONDS);
-        if (!locked) {
+        if (!acquire()) {
             return false;
         }
-        long period = Math.max(100, lockout >>> 1);
         expired = timeout < 0 ? -1 : System.currentTimeMillis() + timeout;
+        if (watchdog != null) {
+            lease = watchdog.watch(key, value, lockout, expired);
+            return true;
+        }
+        long period = Math.max(100, lockout >>> 1);
         future = executor.scheduleAtFixedRate(() -> {
             if (expired == -1 || expired > System.currentTimeMillis()) {
-                accessor.expire(key, lockout, TimeUnit.MILLISECONDS);
+                ((ExpiringDistributedAccessor) accessor).expire(key, value, lockout, TimeUnit.MILLISECONDS);
             }
         }, period, period, TimeUnit.MILLISECONDS);
         return true;
@@ -147,6 +214,67 @@ public class DistributedLock {
             future.cancel(true);
             future = null;
         }
+        if (lease != null) {
+            lease.cancel();
+            lease = null;
+        }
+        release();
+    }
+
+    /** Acquires the key once, which is renewed by comparing the value. */
+    boolean acquire() {
+        return accessor.setIfAbsent(key, value, lockout, TimeUnit.MILLISECONDS);
+    }
+
+    /** Releases the key acquired. */
+    void release() {
         accessor.delete(key, value);
     }
+
+    /**
+     * Hands the held lock over to another holder in this process with a new timeout in milliseconds,
+     * returns {@code false} if the lease has been lost or has passed its timeout, in which case the lock should be unlocked.
+     */
+    boolean handOver(long timeout) {
+        long now = System.currentTimeMillis();
+        if ((lease != null && lease.isLost()) || (expired >= 0 && expired <= now)) {
+            return false;
+        }
+        expired = timeout < 0 ? -1 : now + timeout;
+        if (lease != null) {
+            lease.cancel();
+            lease = watchdog.watch(key, value, lockout, expired);
+        }
+        return true;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    LeaseWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    DistributedAccessor getAccessor() {
+        return accessor;
+    }
+
+    long getLockout() {
+        return lockout;
+    }
+
+    int getRetries() {
+        return retries;
+    }
+
+    /** Returns a random delay between the half and the whole of the exponential backoff of the given attempt. */
+    private static long backoff(int attempt) {
+        long bound = Math.min(BACKOFF_MAX, BACKOFF_BASE << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(bound >>> 1, bound + 1);
+    }
 }
@@ -3,23 +3,101 @@ package io.leego.commons.lock;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
+ * A factory of {@link DistributedLock}s, whose leases are renewed in batches by a shared {@link LeaseWatchdog}.
+ * <p>
+ * If {@code maxHandoffs} is positive, the factory creates {@link CoalescingDistributedLock}s,
+ * whose holders in this process queue locally and hand the remote lock over to each other.
+ *
  * @author Leego Yih
  */
-public class DistributedLockFactory {
-    private final ScheduledExecutorService executor;
+public class DistributedLockFactory implements AutoCloseable {
     private final DistributedAccessor accessor;
+    private final LeaseWatchdog watchdog;
     private final String lockPrefix;
+    private final LocalLockTable table;
+    /** Whether the watchdog is created by this factory, and closed with it. */
+    private final boolean ownsWatchdog;
 
+    /**
+     * Creates a factory with its own watchdog, which is closed with the factory.
+     *
+     * @throws UnsupportedOperationException if the accessor is not an {@link ExpiringDistributedAccessor}.
+     */
     public DistributedLockFactory(ScheduledExecutorService executor, DistributedAccessor accessor, String lockPrefix) {
-        this.executor = executor;
+        this(new LeaseWatchdog(executor, accessor), accessor, lockPrefix, 0, true);
+    }
+
+    public DistributedLockFactory(LeaseWatchdog watchdog, DistributedAccessor accessor, String lockPrefix) {
+        this(watchdog, accessor, lockPrefix, 0);
+    }
+
+    /**
+     * @param watchdog    the watchdog, which is not closed with the factory.
+     * @param accessor    the accessor.
+     * @param lockPrefix  the prefix of the keys.
+     * @param maxHandoffs the maximum number of consecutive handoffs in this process before a lock is released remotely,
+     *                    {@code 0} means the locks are not coalesced.
+     */
+    public DistributedLockFactory(LeaseWatchdog watchdog, DistributedAccessor accessor, String lockPrefix, int maxHandoffs) {
+        this(watchdog, accessor, lockPrefix, maxHandoffs, false);
+    }
+
+    private DistributedLockFactory(LeaseWatchdog watchdog, DistributedAccessor accessor, String lockPrefix, int maxHandoffs, boolean ownsWatchdog) {
         this.accessor = accessor;
+        this.watchdog = watchdog;
         this.lockPrefix = lockPrefix;
+        this.table = maxHandoffs > 0 ? new LocalLockTable(maxHandoffs) : null;
+        this.ownsWatchdog = ownsWatchdog;
     }
 
     /**
      * Returns a new {@code DistributedLock} with the given condition.
      */
     public DistributedLock create(String condition) {
-        return new DistributedLock(executor, accessor, lockPrefix + ":" + condition);
+        String key = lockPrefix + ":" + condition;
+        if (table != null) {
+            return new CoalescingDistributedLock(table, watchdog, accessor, key, 5 * 1000, -1);
+        }
+        return new DistributedLock(watchdog, accessor, key, 5 * 1000, -1);
+    }
+
+    /**
+     * Returns a new {@code ReentrantDistributedLock} with the given condition, which is held by the threads locking it.
+     *
+     * @throws UnsupportedOperationException if the accessor is not a {@link HoldingDistributedAccessor}.
+     */
+    public ReentrantDistributedLock createReentrant(String condition) {
+        return new ReentrantDistributedLock(watchdog, holding(), lockPrefix + ":" + condition, 5 * 1000, -1);
+    }
+
+    /**
+     * Returns a new {@code DistributedReadWriteLock} with the given condition, which is held by the threads locking it.
+     *
+     * @throws UnsupportedOperationException if the accessor is not a {@link HoldingDistributedAccessor}.
+     */
+    public DistributedReadWriteLock createReadWrite(String condition) {
+        return new DistributedReadWriteLock(watchdog, holding(), lockPrefix + ":" + condition, 5 * 1000, -1);
+    }
+
+    public LeaseWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Stops the watchdog if it is created by this factory, the leases of the held locks expire by themselves.
+     * A watchdog given to the factory may be shared, and is left to its creator to close.
+     */
+    @Override
+    public void close() {
+        if (ownsWatchdog) {
+            watchdog.close();
+        }
+    }
+
+    private HoldingDistributedAccessor holding() {
+        if (accessor instanceof HoldingDistributedAccessor holding) {
+            return holding;
+        }
+        throw new UnsupportedOperationException("The accessor does not support holds: " + accessor.getClass().getName());
     }
 }
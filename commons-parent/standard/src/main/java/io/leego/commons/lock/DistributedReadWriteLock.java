@@ -0,0 +1,36 @@
+package io.leego.commons.lock;
+
+/**
+ * A pair of {@link ReentrantDistributedLock}s of the same key, one for reading which is shared by the readers,
+ * and one for writing which is exclusive.
+ * <p>
+ * A writer waits until all the readers have released the lock, and the readers arriving meanwhile wait for the writer.
+ * A reader may hold the read lock within the write lock of its thread, but the read lock is never upgraded to the write lock.
+ * Both locks are held by the threads locking them, so that an instance may be shared by the threads.
+ *
+ * @author Leego Yih
+ */
+public class DistributedReadWriteLock {
+    private final ReentrantDistributedLock readLock;
+    private final ReentrantDistributedLock writeLock;
+
+    /**
+     * @param watchdog the watchdog.
+     * @param accessor the accessor.
+     * @param key      the key of the lock.
+     * @param lockout  the time to live in milliseconds.
+     * @param retries  the number of retries of {@link DistributedLock#lock()}, {@code -1} means infinite.
+     */
+    public DistributedReadWriteLock(LeaseWatchdog watchdog, HoldingDistributedAccessor accessor, String key, long lockout, int retries) {
+        this.readLock = new ReentrantDistributedLock(watchdog, accessor, key, lockout, retries, true);
+        this.writeLock = new ReentrantDistributedLock(watchdog, accessor, key, lockout, retries, false);
+    }
+
+    public ReentrantDistributedLock readLock() {
+        return readLock;
+    }
+
+    public ReentrantDistributedLock writeLock() {
+        return writeLock;
+    }
+}
@@ -0,0 +1,45 @@
+package io.leego.commons.lock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DistributedAccessor} that renews a key only if it holds the given value,
+ * which is required to renew the leases of the locks, so that a lease taken over by another owner is never renewed.
+ *
+ * @author Leego Yih
+ */
+public interface ExpiringDistributedAccessor extends DistributedAccessor {
+
+    /**
+     * Set time to live for given {@code key} if it holds the given {@code value}, which is compared and expired atomically.
+     *
+     * @param key     must not be null.
+     * @param value   must not be null.
+     * @param timeout the key expiration timeout.
+     * @param unit    must not be null.
+     * @return {@code true} if the key is set.
+     */
+    boolean expire(String key, String value, long timeout, TimeUnit unit);
+
+    /**
+     * Set time to live for each key if it holds the given value.
+     * <p>
+     * The default implementation expires the keys one by one,
+     * implementations should override it to expire them in a single round trip.
+     *
+     * @param entries the values keyed by the keys, must not be null.
+     * @param timeout the key expiration timeout.
+     * @param unit    must not be null.
+     * @return whether each key is set, keyed by the keys.
+     */
+    default Map<String, Boolean> expire(Map<String, String> entries, long timeout, TimeUnit unit) {
+        Map<String, Boolean> results = new LinkedHashMap<>((int) (entries.size() / 0.75F) + 1);
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            results.put(entry.getKey(), expire(entry.getKey(), entry.getValue(), timeout, unit));
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.leego.commons.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ExpiringDistributedAccessor} that counts the holds of each owner of a key,
+ * which is required by {@link ReentrantDistributedLock} and {@link DistributedReadWriteLock}.
+ *
+ * @author Leego Yih
+ */
+public interface HoldingDistributedAccessor extends ExpiringDistributedAccessor {
+
+    /**
+     * Acquire a shared or an exclusive hold of given {@code key} for the {@code owner},
+     * and set the time to live of the hold, which is renewed by {@link #expire(String, String, long, TimeUnit)} with the owner.
+     * <p>
+     * A shared hold is acquired if the key is free or shared, an exclusive hold only if the key is free.
+     * The owner may acquire its hold again, including a shared hold within an exclusive one, but never upgrades a shared hold.
+     * Once an exclusive hold is refused by shared holds, new owners are refused shared holds until the key is free,
+     * so that the exclusive owner is not starved.
+     * The key is deleted once all the holds are released or expired.
+     * <p>
+     * The holds never share a key with {@link #setIfAbsent(String, String, long, TimeUnit)}:
+     * a key set by it is never held until it is deleted or expires, and a held key is never set by it until the key is deleted.
+     *
+     * @param key     must not be null.
+     * @param owner   must not be null.
+     * @param shared  whether the hold is shared.
+     * @param timeout the hold expiration timeout.
+     * @param unit    must not be null.
+     * @return the number of the holds of the owner, or {@code 0} if the hold is not acquired.
+     */
+    long acquire(String key, String owner, boolean shared, long timeout, TimeUnit unit);
+
+    /**
+     * Release a hold of given {@code key} acquired by the {@code owner}.
+     *
+     * @param key   must not be null.
+     * @param owner must not be null.
+     * @return the number of the remaining holds of the owner, or {@code -1} if the key is not held by the owner.
+     */
+    long release(String key, String owner);
+
+}
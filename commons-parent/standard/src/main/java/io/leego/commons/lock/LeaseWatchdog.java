@@ -0,0 +1,262 @@
+package io.leego.commons.lock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A watchdog that renews the leases of the held locks in batches.
+ * <p>
+ * Leases are tracked in a hashed timing wheel of {@code wheelSize} buckets, each covering {@code tick} milliseconds.
+ * A single task advances the wheel every tick, and renews all the leases due in that tick with one call to
+ * {@link ExpiringDistributedAccessor#expire(Map, long, TimeUnit)}, instead of scheduling a timer and making a round trip per lock.
+ * The leases of the same key with different values, e.g. the shared holds of a key, are renewed in separate calls of the same tick.
+ * <p>
+ * Leases are dropped from the wheel once they are cancelled, once their renewal deadline has passed,
+ * or once a renewal reports that the key is no longer held, so that dead leases never pile up.
+ * If a renewal fails, the leases are renewed again in the next tick.
+ * Failures are logged with {@link System.Logger}, so that this module depends on no logging framework.
+ *
+ * @author Leego Yih
+ */
+public class LeaseWatchdog implements AutoCloseable {
+    private static final System.Logger logger = System.getLogger(LeaseWatchdog.class.getName());
+    private final ExpiringDistributedAccessor accessor;
+    /** tick in milliseconds */
+    private final long tick;
+    private final Queue<Lease>[] wheel;
+    private final int mask;
+    private final long origin = System.nanoTime();
+    private final ScheduledFuture<?> future;
+    /** The last tick advanced, only written by the task. */
+    private volatile long lastTick;
+
+    public LeaseWatchdog(ScheduledExecutorService executor, DistributedAccessor accessor) {
+        this(executor, accessor, 100, 512);
+    }
+
+    /**
+     * @param executor  the executor to advance the wheel.
+     * @param accessor  the accessor.
+     * @param tick      the duration of a tick in milliseconds.
+     * @param wheelSize the number of buckets, rounded up to a power of two.
+     * @throws UnsupportedOperationException if the accessor is not an {@link ExpiringDistributedAccessor}.
+     */
+    @SuppressWarnings("unchecked")
+    public LeaseWatchdog(ScheduledExecutorService executor, DistributedAccessor accessor, long tick, int wheelSize) {
+        if (tick <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!(accessor instanceof ExpiringDistributedAccessor expiring)) {
+            throw new UnsupportedOperationException("The accessor does not support value-checked expiry: " + accessor.getClass().getName());
+        }
+        int n = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.accessor = expiring;
+        this.tick = tick;
+        this.wheel = (Queue<Lease>[]) new Queue<?>[n];
+        for (int i = 0; i < n; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = n - 1;
+        this.future = executor.scheduleAtFixedRate(this::advance, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Watches the lease of a held lock, which is renewed to {@code lockout} every half of it.
+     *
+     * @param key      the key of the lock.
+     * @param value    the value of the lock.
+     * @param lockout  the time to live in milliseconds.
+     * @param deadline the time in milliseconds after which the lease is no longer renewed, {@code -1} means never.
+     * @return the lease, which must be cancelled once the lock is released.
+     */
+    public Lease watch(String key, String value, long lockout, long deadline) {
+        long period = Math.max(100, lockout >>> 1);
+        Lease lease = new Lease(key, value, lockout, deadline, Math.max(1, period / tick));
+        schedule(lease, currentTick() + lease.period);
+        return lease;
+    }
+
+    /**
+     * Stops renewing, the leases expire by themselves.
+     */
+    @Override
+    public void close() {
+        future.cancel(false);
+        for (Queue<Lease> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the number of the leases in the wheel, including the ones cancelled but not dropped yet.
+     *
+     * @return the number of the leases.
+     */
+    public int size() {
+        int size = 0;
+        for (Queue<Lease> bucket : wheel) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    /** Advances the wheel to the current tick, catching up with the ticks missed by delays. */
+    private void advance() {
+        long now = currentTick();
+        for (long t = lastTick + 1; t <= now; t++) {
+            try {
+                renew(t);
+            } catch (RuntimeException | Error e) {
+                // Never throws, otherwise the task is suppressed.
+                logger.log(System.Logger.Level.WARNING, "Could not renew the leases due in tick " + t, e);
+            }
+            lastTick = t;
+        }
+    }
+
+    private void renew(long t) {
+        Queue<Lease> bucket = wheel[(int) (t & mask)];
+        long millis = System.currentTimeMillis();
+        // The leases due are grouped by lockout, and each group is renewed in batches.
+        Map<Long, List<Batch>> groups = new LinkedHashMap<>();
+        for (int i = bucket.size(); i > 0; i--) {
+            Lease lease = bucket.poll();
+            if (lease == null) {
+                break;
+            }
+            if (lease.cancelled || (lease.deadline >= 0 && lease.deadline <= millis)) {
+                continue;
+            }
+            // Leases of later rounds wait for their own tick.
+            if (lease.due > t) {
+                schedule(lease, lease.due);
+                continue;
+            }
+            add(groups.computeIfAbsent(lease.lockout, k -> new ArrayList<>()), lease);
+        }
+        for (Map.Entry<Long, List<Batch>> group : groups.entrySet()) {
+            for (Batch batch : group.getValue()) {
+                renew(t, group.getKey(), batch);
+            }
+        }
+    }
+
+    private void renew(long t, long lockout, Batch batch) {
+        Map<String, Boolean> results;
+        try {
+            results = accessor.expire(batch.entries, lockout, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            logger.log(System.Logger.Level.DEBUG, "Could not renew the leases, retrying in the next tick", e);
+            for (Lease lease : batch.leases) {
+                schedule(lease, t + 1);
+            }
+            return;
+        }
+        for (Lease lease : batch.leases) {
+            if (Boolean.TRUE.equals(results.get(lease.key))) {
+                schedule(lease, t + lease.period);
+            } else {
+                lease.lost = true;
+            }
+        }
+    }
+
+    /**
+     * Adds the lease to the first batch which does not hold its key with another value, or to a new batch.
+     * The leases of the same key and value share an entry, and the other values of the key are renewed in other batches,
+     * e.g. the shared holds of a key, so that every lease is renewed in its tick.
+     */
+    private static void add(List<Batch> batches, Lease lease) {
+        for (Batch batch : batches) {
+            if (batch.add(lease)) {
+                return;
+            }
+        }
+        Batch batch = new Batch();
+        batch.add(lease);
+        batches.add(batch);
+    }
+
+    private void schedule(Lease lease, long due) {
+        lease.due = due;
+        wheel[(int) (due & mask)].offer(lease);
+    }
+
+    private long currentTick() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin) / tick;
+    }
+
+    /** The leases renewed in a single call, where each key has a single value. */
+    private static final class Batch {
+        final Map<String, String> entries = new LinkedHashMap<>();
+        final List<Lease> leases = new ArrayList<>();
+
+        boolean add(Lease lease) {
+            String value = entries.putIfAbsent(lease.key, lease.value);
+            if (value != null && !value.equals(lease.value)) {
+                return false;
+            }
+            leases.add(lease);
+            return true;
+        }
+    }
+
+    /**
+     * The lease of a held lock.
+     */
+    public static final class Lease {
+        private final String key;
+        private final String value;
+        private final long lockout;
+        private final long deadline;
+        /** period in ticks */
+        private final long period;
+        /** The tick at which the lease is renewed. */
+        private volatile long due;
+        private volatile boolean cancelled;
+        private volatile boolean lost;
+
+        Lease(String key, String value, long lockout, long deadline, long period) {
+            this.key = key;
+            this.value = value;
+            this.lockout = lockout;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        /**
+         * Stops renewing the lease, which is dropped from the wheel when its bucket is visited.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Returns {@code true} if a renewal has reported that the key is no longer held.
+         *
+         * @return {@code true} if the lease is lost.
+         */
+        public boolean isLost() {
+            return lost;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.leego.commons.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * The local locks of the keys contended in this process, shared by the {@link CoalescingDistributedLock}s of a factory.
+ * <p>
+ * A slot is referenced by the holder and the waiters of its key, and is removed once the last of them leaves,
+ * so that the table only holds the keys in use.
+ *
+ * @author Leego Yih
+ */
+class LocalLockTable {
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>(64);
+    private final int maxHandoffs;
+
+    /**
+     * @param maxHandoffs the maximum number of consecutive handoffs in this process before the lock is released remotely.
+     */
+    LocalLockTable(int maxHandoffs) {
+        if (maxHandoffs < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxHandoffs = maxHandoffs;
+    }
+
+    /** Returns the slot of given {@code key}, which must be released once no longer used. */
+    Slot acquire(String key, Supplier<DistributedLock> remote) {
+        return slots.compute(key, (k, v) -> {
+            Slot slot = v == null ? new Slot(remote.get()) : v;
+            slot.references++;
+            return slot;
+        });
+    }
+
+    void release(String key, Slot slot) {
+        slots.computeIfPresent(key, (k, v) -> v == slot && --v.references == 0 ? null : v);
+    }
+
+    int getMaxHandoffs() {
+        return maxHandoffs;
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * The local lock of a key, and the remote lock held on behalf of the local holders.
+     * The fields other than {@code references} are guarded by {@code local}, which is a fair semaphore rather than a lock,
+     * so that a thread locking a key it already holds through another instance waits like any other holder,
+     * instead of re-entering and taking the remote lock over from itself.
+     */
+    static class Slot {
+        final Semaphore local = new Semaphore(1, true);
+        final DistributedLock remote;
+        /** Whether the remote lock is held by this process. */
+        boolean held;
+        /** The number of consecutive handoffs. */
+        int handoffs;
+        /** Guarded by the map. */
+        int references;
+
+        Slot(DistributedLock remote) {
+            this.remote = remote;
+        }
+    }
+}
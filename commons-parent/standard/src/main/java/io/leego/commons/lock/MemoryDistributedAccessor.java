@@ -0,0 +1,202 @@
+package io.leego.commons.lock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DistributedAccessor} that keeps the keys in memory,
+ * which is only distributed within the current process and intended for tests and standalone applications.
+ * The subscribers are notified when a key is deleted, or its last hold is released, but not when it expires.
+ *
+ * @author Leego Yih
+ */
+public class MemoryDistributedAccessor implements NotifiableDistributedAccessor, HoldingDistributedAccessor {
+    /** The keys set by {@link #setIfAbsent} and the held keys share the map, so that either excludes the other atomically. */
+    private final ConcurrentMap<String, Slot> store = new ConcurrentHashMap<>(64);
+    private final ReleaseListeners listeners = new ReleaseListeners();
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        Entry entry = new Entry(value, deadline(timeout, unit));
+        return store.compute(key, (k, v) -> v == null || v.isExpired() ? entry : v) == entry;
+    }
+
+    @Override
+    public boolean expire(String key, long timeout, TimeUnit unit) {
+        long deadline = deadline(timeout, unit);
+        boolean[] expired = new boolean[1];
+        store.computeIfPresent(key, (k, v) -> {
+            if (v.isExpired()) {
+                return null;
+            }
+            if (v instanceof Entry entry) {
+                expired[0] = true;
+                return new Entry(entry.value, deadline);
+            }
+            return v;
+        });
+        return expired[0];
+    }
+
+    @Override
+    public boolean expire(String key, String value, long timeout, TimeUnit unit) {
+        long deadline = deadline(timeout, unit);
+        boolean[] expired = new boolean[1];
+        store.computeIfPresent(key, (k, v) -> {
+            if (v.isExpired()) {
+                return null;
+            }
+            if (v instanceof Entry entry) {
+                if (entry.value.equals(value)) {
+                    expired[0] = true;
+                    return new Entry(entry.value, deadline);
+                }
+            } else if (v instanceof Hold hold) {
+                Holder holder = hold.holders.get(value);
+                if (holder != null) {
+                    holder.deadline = deadline;
+                    expired[0] = true;
+                }
+            }
+            return v;
+        });
+        return expired[0];
+    }
+
+    @Override
+    public boolean delete(String key, String value) {
+        boolean[] deleted = new boolean[1];
+        store.computeIfPresent(key, (k, v) -> {
+            if (v.isExpired()) {
+                return null;
+            }
+            if (v instanceof Entry entry && entry.value.equals(value)) {
+                deleted[0] = true;
+                return null;
+            }
+            return v;
+        });
+        if (deleted[0]) {
+            listeners.notify(key);
+        }
+        return deleted[0];
+    }
+
+    @Override
+    public long acquire(String key, String owner, boolean shared, long timeout, TimeUnit unit) {
+        long deadline = deadline(timeout, unit);
+        long[] count = new long[1];
+        store.compute(key, (k, v) -> {
+            if (v instanceof Entry entry && !entry.isExpired()) {
+                return v;
+            }
+            Hold hold = v instanceof Hold h && !h.isExpired() ? h : new Hold(shared);
+            Holder holder = hold.holders.get(owner);
+            boolean granted;
+            if (hold.holders.isEmpty()) {
+                granted = true;
+            } else if (!hold.shared) {
+                granted = holder != null;
+            } else if (shared) {
+                granted = holder != null || !hold.intent;
+            } else {
+                // Prevents new readers from starving the writer, unless upgrading.
+                hold.intent |= holder == null;
+                granted = false;
+            }
+            if (granted) {
+                if (holder == null) {
+                    holder = new Holder();
+                    hold.holders.put(owner, holder);
+                }
+                holder.deadline = deadline;
+                count[0] = ++holder.count;
+            }
+            return hold;
+        });
+        return count[0];
+    }
+
+    @Override
+    public long release(String key, String owner) {
+        long[] count = {-1};
+        boolean[] deleted = new boolean[1];
+        store.computeIfPresent(key, (k, v) -> {
+            if (!(v instanceof Hold hold)) {
+                return v.isExpired() ? null : v;
+            }
+            Holder holder = hold.holders.get(owner);
+            if (holder == null) {
+                return hold.isExpired() ? null : hold;
+            }
+            count[0] = --holder.count;
+            if (holder.count == 0) {
+                hold.holders.remove(owner);
+            }
+            deleted[0] = hold.isExpired();
+            return deleted[0] ? null : hold;
+        });
+        if (deleted[0]) {
+            listeners.notify(key);
+        }
+        return count[0];
+    }
+
+    @Override
+    public Subscription subscribe(String key, Runnable listener) {
+        return listeners.subscribe(key, listener);
+    }
+
+    private long deadline(long timeout, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /** The value of a key, guarded by the map. */
+    private abstract static class Slot {
+        /** Returns {@code true} if the key has expired, in which case it is free. */
+        abstract boolean isExpired();
+    }
+
+    /** The holds of a key. */
+    private static class Hold extends Slot {
+        final boolean shared;
+        final Map<String, Holder> holders = new HashMap<>();
+        /** Whether an exclusive hold has been refused by the shared holds. */
+        boolean intent;
+
+        Hold(boolean shared) {
+            this.shared = shared;
+        }
+
+        /** Removes the expired holders, returns {@code true} if there is none left. */
+        @Override
+        boolean isExpired() {
+            long now = System.nanoTime();
+            holders.values().removeIf(holder -> holder.deadline - now <= 0);
+            return holders.isEmpty();
+        }
+    }
+
+    private static class Holder {
+        long count;
+        long deadline;
+    }
+
+    private static class Entry extends Slot {
+        final String value;
+        final long deadline;
+
+        Entry(String value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        @Override
+        boolean isExpired() {
+            return deadline - System.nanoTime() <= 0;
+        }
+    }
+}
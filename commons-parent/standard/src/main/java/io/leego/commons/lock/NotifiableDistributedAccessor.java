@@ -0,0 +1,33 @@
+package io.leego.commons.lock;
+
+/**
+ * A {@link DistributedAccessor} that notifies the subscribers when a key is deleted,
+ * so that the waiters of a lock wake up once it is released instead of polling.
+ * <p>
+ * A key which expires by itself may not be notified, so waiters should still retry after a while.
+ *
+ * @author Leego Yih
+ */
+public interface NotifiableDistributedAccessor extends DistributedAccessor {
+
+    /**
+     * Subscribes to the deletion of given {@code key}.
+     *
+     * @param key      must not be null.
+     * @param listener the listener called when the key is deleted, must return quickly.
+     * @return the subscription, which must be cancelled once the key is no longer waited for.
+     */
+    Subscription subscribe(String key, Runnable listener);
+
+    /**
+     * A subscription to the deletion of a key.
+     */
+    interface Subscription {
+
+        /**
+         * Cancels the subscription.
+         */
+        void cancel();
+
+    }
+}
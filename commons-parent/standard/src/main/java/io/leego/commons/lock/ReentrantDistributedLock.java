@@ -0,0 +1,120 @@
+package io.leego.commons.lock;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reentrant {@link DistributedLock}, which is held by a thread rather than by an instance.
+ * <p>
+ * The owner of the lock is resolved from the thread calling {@link #lock(long)} or {@link #tryLock(long)},
+ * so that an instance may be shared by the threads, and the locks of the same key created in nested calls of a thread are all acquired.
+ * The holds are counted both by each thread, like {@link java.util.concurrent.locks.ReentrantReadWriteLock},
+ * and by the accessor with {@link HoldingDistributedAccessor#acquire(String, String, boolean, long, TimeUnit)},
+ * and the key is released once all the holds of the owner are unlocked.
+ *
+ * @author Leego Yih
+ */
+public class ReentrantDistributedLock extends DistributedLock {
+    /** Distinguishes the threads of this process from the ones of the others. */
+    private static final String PROCESS_ID = UUID.randomUUID().toString();
+    private final boolean shared;
+    /** The holds of the current thread, which is removed once all of them are released. */
+    private final ThreadLocal<Holder> holders = new ThreadLocal<>();
+
+    /**
+     * Creates an exclusive lock whose lease is renewed by the watchdog.
+     *
+     * @param watchdog the watchdog.
+     * @param accessor the accessor.
+     * @param key      the key of the lock.
+     * @param lockout  the time to live in milliseconds.
+     * @param retries  the number of retries of {@link #lock()}, {@code -1} means infinite.
+     */
+    public ReentrantDistributedLock(LeaseWatchdog watchdog, HoldingDistributedAccessor accessor, String key, long lockout, int retries) {
+        this(watchdog, accessor, key, lockout, retries, false);
+    }
+
+    ReentrantDistributedLock(LeaseWatchdog watchdog, HoldingDistributedAccessor accessor, String key, long lockout, int retries, boolean shared) {
+        super(watchdog, accessor, key, lockout, retries);
+        this.shared = shared;
+    }
+
+    @Override
+    public boolean tryLock(long timeout) {
+        Holder holder = holders.get();
+        if (holder != null) {
+            holder.count++;
+            return true;
+        }
+        Owner owner = new Owner(this, PROCESS_ID + ":" + Thread.currentThread().threadId());
+        if (!owner.tryLock(timeout)) {
+            return false;
+        }
+        holders.set(new Holder(owner));
+        return true;
+    }
+
+    /**
+     * Releases a hold of the current thread, the lock is released once all the holds of the thread are released.
+     *
+     * @throws IllegalMonitorStateException if the lock is not held by the current thread.
+     */
+    @Override
+    public void unlock() {
+        Holder holder = holders.get();
+        if (holder == null) {
+            throw new IllegalMonitorStateException();
+        }
+        if (--holder.count == 0) {
+            holders.remove();
+            holder.owner.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of the holds of the current thread on this instance.
+     *
+     * @return the number of the holds.
+     */
+    public int getHoldCount() {
+        Holder holder = holders.get();
+        return holder != null ? holder.count : 0;
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return holders.get() != null;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    private static final class Holder {
+        final Owner owner;
+        int count = 1;
+
+        Holder(Owner owner) {
+            this.owner = owner;
+        }
+    }
+
+    /** The lock held by a thread, whose value is the owner of the holds. */
+    private static final class Owner extends DistributedLock {
+        private final boolean shared;
+
+        Owner(ReentrantDistributedLock lock, String owner) {
+            super(lock.getWatchdog(), lock.getAccessor(), lock.getKey(), owner, lock.getLockout(), lock.getRetries());
+            this.shared = lock.shared;
+        }
+
+        @Override
+        boolean acquire() {
+            return ((HoldingDistributedAccessor) getAccessor()).acquire(getKey(), getValue(), shared, getLockout(), TimeUnit.MILLISECONDS) > 0;
+        }
+
+        @Override
+        void release() {
+            ((HoldingDistributedAccessor) getAccessor()).release(getKey(), getValue());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.leego.commons.lock;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The listeners subscribed to the deletion of keys, shared by the implementations of {@link NotifiableDistributedAccessor}.
+ *
+ * @author Leego Yih
+ */
+public final class ReleaseListeners {
+    private static final System.Logger logger = System.getLogger(ReleaseListeners.class.getName());
+    private final ConcurrentMap<String, Set<Runnable>> listeners = new ConcurrentHashMap<>(64);
+
+    public NotifiableDistributedAccessor.Subscription subscribe(String key, Runnable listener) {
+        // Adds within the mapping, so that a concurrent cancellation never removes the set the listener is added to.
+        listeners.compute(key, (k, v) -> {
+            Set<Runnable> set = v != null ? v : ConcurrentHashMap.newKeySet();
+            set.add(listener);
+            return set;
+        });
+        return () -> listeners.computeIfPresent(key, (k, v) -> v.remove(listener) && v.isEmpty() ? null : v);
+    }
+
+    /**
+     * Calls the listeners of given {@code key}.
+     *
+     * @param key the deleted key.
+     */
+    public void notify(String key) {
+        Set<Runnable> set = listeners.get(key);
+        if (set == null) {
+            return;
+        }
+        for (Runnable listener : set) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                // A listener never prevents the others from being notified.
+                logger.log(System.Logger.Level.WARNING, "Could not notify a listener of key '" + key + "'", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package io.leego.commons.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class CoalescingDistributedLockTest {
+    private static final int THREADS = 16;
+    private static final int ITERATIONS = 100;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Counts the remote calls of the same workload with and without coalescing,
+     * e.g. about 7200 and 60 on a single core, where nearly every unlock has a local waiter.
+     */
+    @Test
+    void coalesceRemoteCalls() throws InterruptedException {
+        long plain = run(0);
+        long coalesced = run(64);
+        assertTrue(coalesced * 4 < plain, "Expected fewer remote calls than " + plain + " / 4, but was " + coalesced);
+    }
+
+    /** Runs the workload on one key, and returns the number of the remote calls to acquire or release it. */
+    private long run(int maxHandoffs) throws InterruptedException {
+        CountingAccessor accessor = new CountingAccessor();
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger locked = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        try (LeaseWatchdog watchdog = new LeaseWatchdog(scheduler, accessor)) {
+            DistributedLockFactory factory = new DistributedLockFactory(watchdog, accessor, "test", maxHandoffs);
+            for (int i = 0; i < THREADS; i++) {
+                boolean trying = i % 4 == 0;
+                executor.execute(() -> {
+                    try {
+                        for (int j = 0; j < ITERATIONS; j++) {
+                            DistributedLock lock = factory.create("key");
+                            if (trying && j % 2 == 0) {
+                                if (!lock.tryLock()) {
+                                    continue;
+                                }
+                            } else {
+                                lock.lock();
+                            }
+                            try {
+                                if (inside.incrementAndGet() != 1) {
+                                    overlaps.incrementAndGet();
+                                }
+                                if (j % 10 == 0) {
+                                    Thread.sleep(1);
+                                }
+                                inside.decrementAndGet();
+                                locked.incrementAndGet();
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(1, TimeUnit.MINUTES));
+        }
+        assertEquals(0, overlaps.get());
+        assertTrue(locked.get() > 0);
+        // The remote lock is released once the last holder leaves.
+        assertTrue(accessor.setIfAbsent("test:key", "", 1, TimeUnit.SECONDS));
+        return accessor.calls.get() - 1;
+    }
+
+    /** A thread holding a key through an instance is refused by another instance, and keeps the remote lock. */
+    @Test
+    void notReentrant() {
+        CountingAccessor accessor = new CountingAccessor();
+        try (LeaseWatchdog watchdog = new LeaseWatchdog(scheduler, accessor)) {
+            DistributedLockFactory factory = new DistributedLockFactory(watchdog, accessor, "test", 64);
+            DistributedLock outer = factory.create("key");
+            assertTrue(outer.tryLock());
+            DistributedLock inner = factory.create("key");
+            assertFalse(inner.tryLock());
+            inner.unlock();
+            assertFalse(accessor.setIfAbsent("test:key", "", 1, TimeUnit.SECONDS));
+            outer.unlock();
+            assertTrue(accessor.setIfAbsent("test:key", "", 1, TimeUnit.SECONDS));
+        }
+    }
+
+    private static class CountingAccessor extends MemoryDistributedAccessor {
+        final AtomicLong calls = new AtomicLong();
+
+        @Override
+        public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+            calls.incrementAndGet();
+            return super.setIfAbsent(key, value, timeout, unit);
+        }
+
+        @Override
+        public boolean delete(String key, String value) {
+            calls.incrementAndGet();
+            return super.delete(key, value);
+        }
+    }
+}
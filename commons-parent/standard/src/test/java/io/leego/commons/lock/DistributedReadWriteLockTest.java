@@ -0,0 +1,92 @@
+package io.leego.commons.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class DistributedReadWriteLockTest {
+    private static final int THREADS = 8;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    private final MemoryDistributedAccessor accessor = new MemoryDistributedAccessor();
+    private final DistributedLockFactory factory = new DistributedLockFactory(scheduler, accessor, "test");
+
+    @AfterEach
+    void shutdown() {
+        factory.close();
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void reenter() throws Exception {
+        ReentrantDistributedLock lock = factory.createReentrant("key");
+        lock.lock();
+        assertTrue(factory.createReentrant("key").tryLock());
+        assertTrue(lock.tryLock());
+        assertEquals(2, lock.getHoldCount());
+        assertFalse(executor.submit(() -> lock.tryLock()).get());
+        assertEquals(0, (int) executor.submit(lock::getHoldCount).get());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> executor.submit(lock::unlock).get());
+        assertInstanceOf(IllegalMonitorStateException.class, e.getCause());
+        lock.unlock();
+        lock.unlock();
+        assertFalse(lock.isHeldByCurrentThread());
+        assertThrows(IllegalMonitorStateException.class, lock::unlock);
+    }
+
+    /** An instance is shared by the threads, each of which owns its holds. */
+    @Test
+    void share() throws InterruptedException {
+        DistributedReadWriteLock lock = factory.createReadWrite("key");
+        AtomicInteger readers = new AtomicInteger();
+        AtomicInteger writers = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            boolean writing = i < 2;
+            executor.execute(() -> {
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        ReentrantDistributedLock l = writing ? lock.writeLock() : lock.readLock();
+                        AtomicInteger holders = writing ? writers : readers;
+                        l.lock();
+                        try {
+                            int count = holders.incrementAndGet();
+                            if ((writing && (count != 1 || readers.get() != 0)) || (!writing && writers.get() != 0)) {
+                                overlaps.incrementAndGet();
+                            }
+                            Thread.sleep(1);
+                            holders.decrementAndGet();
+                        } finally {
+                            l.unlock();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(0, overlaps.get());
+        assertTrue(accessor.setIfAbsent("test:key", "", 1, TimeUnit.SECONDS));
+    }
+}
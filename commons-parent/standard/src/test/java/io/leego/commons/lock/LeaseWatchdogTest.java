@@ -0,0 +1,94 @@
+package io.leego.commons.lock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class LeaseWatchdogTest {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final MemoryDistributedAccessor accessor = new MemoryDistributedAccessor();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void renew() throws InterruptedException {
+        try (LeaseWatchdog watchdog = new LeaseWatchdog(scheduler, accessor, 10, 64)) {
+            accessor.setIfAbsent("key", "a", 200, TimeUnit.MILLISECONDS);
+            LeaseWatchdog.Lease lease = watchdog.watch("key", "a", 200, -1);
+            Thread.sleep(500);
+            assertFalse(lease.isLost());
+            assertFalse(accessor.setIfAbsent("key", "b", 200, TimeUnit.MILLISECONDS));
+            lease.cancel();
+            Thread.sleep(300);
+            assertTrue(accessor.setIfAbsent("key", "b", 200, TimeUnit.MILLISECONDS));
+            assertEquals(0, watchdog.size());
+        }
+    }
+
+    @Test
+    void renewLost() throws InterruptedException {
+        try (LeaseWatchdog watchdog = new LeaseWatchdog(scheduler, accessor, 10, 64)) {
+            accessor.setIfAbsent("key", "a", 200, TimeUnit.MILLISECONDS);
+            LeaseWatchdog.Lease lease = watchdog.watch("key", "a", 200, -1);
+            accessor.delete("key", "a");
+            Thread.sleep(300);
+            assertTrue(lease.isLost());
+            assertEquals(0, watchdog.size());
+        }
+    }
+
+    /** The shared holds of a key have a value each, and must all be renewed in their tick, where a tick is the whole period. */
+    @Test
+    void renewSharedHolds() throws InterruptedException {
+        List<String> owners = List.of("a", "b", "c");
+        try (LeaseWatchdog watchdog = new LeaseWatchdog(scheduler, accessor, 100, 64)) {
+            for (String owner : owners) {
+                accessor.acquire("key", owner, true, 200, TimeUnit.MILLISECONDS);
+                watchdog.watch("key", owner, 200, -1);
+            }
+            Thread.sleep(700);
+            for (String owner : owners) {
+                assertEquals(0, accessor.release("key", owner), "The hold of '" + owner + "' has expired");
+            }
+        }
+    }
+
+    /** An accessor which cannot compare the value would renew the leases of other owners, so it is rejected up front. */
+    @Test
+    void rejectAccessorWithoutCheckedExpiry() {
+        DistributedAccessor plain = new DistributedAccessor() {
+            @Override
+            public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+                return accessor.setIfAbsent(key, value, timeout, unit);
+            }
+
+            @Override
+            public boolean expire(String key, long timeout, TimeUnit unit) {
+                return accessor.expire(key, timeout, unit);
+            }
+
+            @Override
+            public boolean delete(String key, String value) {
+                return accessor.delete(key, value);
+            }
+        };
+        assertThrows(UnsupportedOperationException.class, () -> new LeaseWatchdog(scheduler, plain));
+        assertThrows(UnsupportedOperationException.class, () -> new DistributedLockFactory(scheduler, plain, "test"));
+        assertThrows(UnsupportedOperationException.class, () -> new DistributedLock(scheduler, plain, "key"));
+    }
+}
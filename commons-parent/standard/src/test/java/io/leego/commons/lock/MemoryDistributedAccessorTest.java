@@ -0,0 +1,123 @@
+package io.leego.commons.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class MemoryDistributedAccessorTest {
+    private final MemoryDistributedAccessor accessor = new MemoryDistributedAccessor();
+
+    @Test
+    void setIfAbsent() throws InterruptedException {
+        assertTrue(accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS));
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+        Thread.sleep(200);
+        assertTrue(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expire() throws InterruptedException {
+        assertFalse(accessor.expire("key", 1, TimeUnit.SECONDS));
+        accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS);
+        assertTrue(accessor.expire("key", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expireWithValue() throws InterruptedException {
+        assertFalse(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS);
+        assertFalse(accessor.expire("key", "b", 1, TimeUnit.SECONDS));
+        assertTrue(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expireInBatch() {
+        accessor.setIfAbsent("key1", "a", 1, TimeUnit.SECONDS);
+        accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("key1", "a");
+        entries.put("key2", "a");
+        entries.put("key3", "a");
+        Map<String, Boolean> results = accessor.expire(entries, 1, TimeUnit.SECONDS);
+        assertEquals(Map.of("key1", true, "key2", false, "key3", false), results);
+    }
+
+    @Test
+    void delete() {
+        accessor.setIfAbsent("key", "a", 1, TimeUnit.SECONDS);
+        assertFalse(accessor.delete("key", "b"));
+        assertTrue(accessor.delete("key", "a"));
+        assertFalse(accessor.delete("key", "a"));
+        assertTrue(accessor.setIfAbsent("key", "b", 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscribe() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        NotifiableDistributedAccessor.Subscription subscription = accessor.subscribe("key", latch::countDown);
+        try {
+            accessor.setIfAbsent("key", "a", 1, TimeUnit.SECONDS);
+            accessor.delete("key", "a");
+            assertTrue(latch.await(1, TimeUnit.SECONDS));
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    void acquireShared() {
+        assertEquals(1, accessor.acquire("key", "a", true, 1, TimeUnit.SECONDS));
+        assertEquals(1, accessor.acquire("key", "b", true, 1, TimeUnit.SECONDS));
+        assertEquals(2, accessor.acquire("key", "a", true, 1, TimeUnit.SECONDS));
+        assertEquals(0, accessor.acquire("key", "c", false, 1, TimeUnit.SECONDS));
+        // The refused exclusive hold keeps new owners out.
+        assertEquals(0, accessor.acquire("key", "d", true, 1, TimeUnit.SECONDS));
+        assertEquals(1, accessor.release("key", "a"));
+        assertEquals(0, accessor.release("key", "a"));
+        assertEquals(0, accessor.release("key", "b"));
+        assertEquals(1, accessor.acquire("key", "c", false, 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void acquireExclusive() throws InterruptedException {
+        assertEquals(1, accessor.acquire("key", "a", false, 100, TimeUnit.MILLISECONDS));
+        assertEquals(2, accessor.acquire("key", "a", true, 100, TimeUnit.MILLISECONDS));
+        assertEquals(0, accessor.acquire("key", "b", true, 100, TimeUnit.MILLISECONDS));
+        assertEquals(-1, accessor.release("key", "b"));
+        assertTrue(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        assertFalse(accessor.expire("key", "b", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(0, accessor.acquire("key", "b", false, 100, TimeUnit.MILLISECONDS));
+        Thread.sleep(1000);
+        // The hold of a crashed owner expires on its own.
+        assertEquals(1, accessor.acquire("key", "b", false, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void acquireExcludesSetIfAbsent() {
+        accessor.setIfAbsent("key1", "a", 1, TimeUnit.SECONDS);
+        assertEquals(0, accessor.acquire("key1", "a", false, 1, TimeUnit.SECONDS));
+        assertEquals(0, accessor.acquire("key1", "b", true, 1, TimeUnit.SECONDS));
+        assertEquals(-1, accessor.release("key1", "a"));
+        assertTrue(accessor.delete("key1", "a"));
+        assertEquals(1, accessor.acquire("key2", "a", true, 1, TimeUnit.SECONDS));
+        assertFalse(accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS));
+        assertFalse(accessor.delete("key2", "a"));
+        assertEquals(0, accessor.release("key2", "a"));
+        assertTrue(accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS));
+    }
+}
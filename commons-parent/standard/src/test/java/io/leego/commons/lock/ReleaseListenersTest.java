@@ -0,0 +1,70 @@
+package io.leego.commons.lock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Leego Yih
+ */
+class ReleaseListenersTest {
+    private final ReleaseListeners listeners = new ReleaseListeners();
+
+    @Test
+    void notifyOthers() {
+        AtomicInteger count = new AtomicInteger();
+        listeners.subscribe("key", () -> {
+            throw new IllegalStateException();
+        });
+        listeners.subscribe("key", count::incrementAndGet);
+        listeners.notify("key");
+        assertEquals(1, count.get());
+    }
+
+    /** A listener subscribed while the last one of the key is cancelled is still notified. */
+    @Test
+    void subscribeWhileCancelling() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                AtomicInteger count = new AtomicInteger();
+                NotifiableDistributedAccessor.Subscription subscription = listeners.subscribe("key", () -> {});
+                CountDownLatch ready = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(2);
+                executor.execute(() -> {
+                    await(ready);
+                    subscription.cancel();
+                    done.countDown();
+                });
+                NotifiableDistributedAccessor.Subscription[] subscribed = new NotifiableDistributedAccessor.Subscription[1];
+                executor.execute(() -> {
+                    await(ready);
+                    subscribed[0] = listeners.subscribe("key", count::incrementAndGet);
+                    done.countDown();
+                });
+                ready.countDown();
+                assertTrue(done.await(1, TimeUnit.SECONDS));
+                listeners.notify("key");
+                assertEquals(1, count.get());
+                subscribed[0].cancel();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
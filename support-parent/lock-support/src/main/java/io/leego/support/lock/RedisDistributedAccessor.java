@@ -0,0 +1,267 @@
+package io.leego.support.lock;
+
+import io.leego.commons.lock.DistributedAccessor;
+import io.leego.commons.lock.HoldingDistributedAccessor;
+import io.leego.commons.lock.NotifiableDistributedAccessor;
+import io.leego.commons.lock.ReleaseListeners;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DistributedAccessor} backed by Redis.
+ * <p>
+ * Keys are set with {@code SET NX PX}, and deleted or expired with Lua scripts which compare the value atomically.
+ * The scripts are executed with {@code EVALSHA}, which falls back to {@code EVAL} if the script is not cached by Redis.
+ * Expiring multiple keys sends the scripts in a single pipeline, which is retried one by one if the pipeline fails.
+ * <p>
+ * Holds are stored in hashes with the count and the deadline of each owner, so that the holds of crashed owners expire
+ * on their own while the others are renewed, and the key is expired or renewed with the same script as the other keys.
+ * The scripts check the type of the key, so that a key set by {@link #setIfAbsent} is never held, and vice versa.
+ * <p>
+ * Deleting a key, or releasing its last hold, publishes it to {@code channel} in the same script. If a {@link RedisMessageListenerContainer} is given,
+ * the channel is subscribed once and the messages are dispatched to the subscribers of the keys in this process,
+ * otherwise the subscribers are never notified and the waiters of a lock fall back to retrying with backoff.
+ *
+ * @author Leego Yih
+ */
+public class RedisDistributedAccessor implements NotifiableDistributedAccessor, HoldingDistributedAccessor {
+    private static final Logger logger = LoggerFactory.getLogger(RedisDistributedAccessor.class);
+    public static final String DEFAULT_CHANNEL = "lock:released";
+    private static final RedisScript<Long> DELETE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('type', KEYS[1]).ok == 'string' and redis.call('get', KEYS[1]) == ARGV[1] then
+                redis.call('del', KEYS[1])
+                redis.call('publish', ARGV[2], KEYS[1])
+                return 1
+            end
+            return 0""", Long.class);
+    /**
+     * The functions of the holds, which are stored in a hash with the fields {@code mode}, {@code intent},
+     * the count of each owner, and the deadline of each owner prefixed with {@code ~}.
+     */
+    private static final String HOLD_FUNCTIONS = """
+            local function now()
+                local t = redis.call('time')
+                return tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)
+            end
+            local function purge(key, t)
+                local fields = redis.call('hgetall', key)
+                local live = 0
+                for i = 1, #fields, 2 do
+                    if string.sub(fields[i], 1, 1) == '~' then
+                        if tonumber(fields[i + 1]) <= t then
+                            redis.call('hdel', key, fields[i], string.sub(fields[i], 2))
+                        else
+                            live = live + 1
+                        end
+                    end
+                end
+                if live == 0 then
+                    redis.call('del', key)
+                end
+                return live
+            end
+            local function touch(key, owner, ttl, t)
+                redis.call('hset', key, '~' .. owner, t + ttl)
+                if redis.call('pttl', key) < ttl then
+                    redis.call('pexpire', key, ttl)
+                end
+            end
+            """;
+    private static final RedisScript<Long> EXPIRE_SCRIPT = new DefaultRedisScript<>(HOLD_FUNCTIONS + """
+            local kind = redis.call('type', KEYS[1]).ok
+            if kind == 'string' then
+                if redis.call('get', KEYS[1]) == ARGV[1] then
+                    return redis.call('pexpire', KEYS[1], ARGV[2])
+                end
+            elseif kind == 'hash' then
+                local t = now()
+                if purge(KEYS[1], t) > 0 and redis.call('hexists', KEYS[1], ARGV[1]) == 1 then
+                    touch(KEYS[1], ARGV[1], tonumber(ARGV[2]), t)
+                    return 1
+                end
+            end
+            return 0""", Long.class);
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(HOLD_FUNCTIONS + """
+            local kind = redis.call('type', KEYS[1]).ok
+            if kind ~= 'none' and kind ~= 'hash' then
+                return 0
+            end
+            local t = now()
+            local ttl = tonumber(ARGV[3])
+            local mode = redis.call('hget', KEYS[1], 'mode')
+            if mode and purge(KEYS[1], t) == 0 then
+                mode = false
+            end
+            if not mode then
+                redis.call('hset', KEYS[1], 'mode', ARGV[2])
+                redis.call('hset', KEYS[1], ARGV[1], 1)
+                touch(KEYS[1], ARGV[1], ttl, t)
+                return 1
+            end
+            local held = redis.call('hexists', KEYS[1], ARGV[1]) == 1
+            if (mode == 'exclusive' and held)
+                    or (mode == 'shared' and ARGV[2] == 'shared' and (held or redis.call('hexists', KEYS[1], 'intent') == 0)) then
+                local count = redis.call('hincrby', KEYS[1], ARGV[1], 1)
+                touch(KEYS[1], ARGV[1], ttl, t)
+                return count
+            end
+            if mode == 'shared' and ARGV[2] == 'exclusive' and not held then
+                redis.call('hset', KEYS[1], 'intent', 1)
+            end
+            return 0""", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(HOLD_FUNCTIONS + """
+            if redis.call('type', KEYS[1]).ok ~= 'hash' then
+                return -1
+            end
+            local count = redis.call('hget', KEYS[1], ARGV[1])
+            if not count then
+                return -1
+            end
+            count = tonumber(count) - 1
+            if count > 0 then
+                redis.call('hset', KEYS[1], ARGV[1], count)
+                return count
+            end
+            redis.call('hdel', KEYS[1], ARGV[1], '~' .. ARGV[1])
+            if purge(KEYS[1], now()) == 0 then
+                redis.call('publish', ARGV[2], KEYS[1])
+            end
+            return 0""", Long.class);
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final ReleaseListeners listeners = new ReleaseListeners();
+    /** Whether the expire script has been loaded for pipelines. */
+    private volatile boolean loaded;
+
+    public RedisDistributedAccessor(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, null, DEFAULT_CHANNEL);
+    }
+
+    public RedisDistributedAccessor(StringRedisTemplate redisTemplate, RedisMessageListenerContainer container) {
+        this(redisTemplate, container, DEFAULT_CHANNEL);
+    }
+
+    /**
+     * @param redisTemplate the template.
+     * @param container     the container to subscribe to the channel, {@code null} means never notified.
+     * @param channel       the channel which the deleted keys are published to.
+     */
+    public RedisDistributedAccessor(StringRedisTemplate redisTemplate, RedisMessageListenerContainer container, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        if (container != null) {
+            container.addMessageListener(this::onMessage, new ChannelTopic(channel));
+        }
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+    }
+
+    @Override
+    public boolean expire(String key, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.expire(key, timeout, unit));
+    }
+
+    @Override
+    public boolean expire(String key, String value, long timeout, TimeUnit unit) {
+        Long result = redisTemplate.execute(EXPIRE_SCRIPT, List.of(key), value, String.valueOf(unit.toMillis(timeout)));
+        return result != null && result > 0;
+    }
+
+    @Override
+    public Map<String, Boolean> expire(Map<String, String> entries, long timeout, TimeUnit unit) {
+        Map<String, Boolean> results = new LinkedHashMap<>((int) (entries.size() / 0.75F) + 1);
+        if (entries.isEmpty()) {
+            return results;
+        }
+        List<String> keys = new ArrayList<>(entries.keySet());
+        List<Object> replies;
+        try {
+            replies = pipeline(entries, unit.toMillis(timeout));
+        } catch (DataAccessException e) {
+            // The script may have been flushed, e.g. Redis is restarted.
+            logger.debug("Could not expire keys in a pipeline", e);
+            loaded = false;
+            for (String key : keys) {
+                results.put(key, expire(key, entries.get(key), timeout, unit));
+            }
+            return results;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Object reply = i < replies.size() ? replies.get(i) : null;
+            results.put(keys.get(i), reply instanceof Long count && count > 0);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean delete(String key, String value) {
+        Long result = redisTemplate.execute(DELETE_SCRIPT, List.of(key), value, channel);
+        return result != null && result > 0;
+    }
+
+    @Override
+    public long acquire(String key, String owner, boolean shared, long timeout, TimeUnit unit) {
+        Long result = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(key), owner, shared ? "shared" : "exclusive", String.valueOf(unit.toMillis(timeout)));
+        return result != null ? result : 0;
+    }
+
+    @Override
+    public long release(String key, String owner) {
+        Long result = redisTemplate.execute(RELEASE_SCRIPT, List.of(key), owner, channel);
+        return result != null ? result : -1;
+    }
+
+    @Override
+    public Subscription subscribe(String key, Runnable listener) {
+        return listeners.subscribe(key, listener);
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        String key = redisTemplate.getStringSerializer().deserialize(message.getBody());
+        if (key != null) {
+            listeners.notify(key);
+        }
+    }
+
+    private List<Object> pipeline(Map<String, String> entries, long millis) {
+        if (!loaded) {
+            byte[] script = EXPIRE_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(script));
+            loaded = true;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[] ttl = serializer.serialize(String.valueOf(millis));
+        String sha = EXPIRE_SCRIPT.getSha1();
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                        serializer.serialize(entry.getKey()), serializer.serialize(entry.getValue()), ttl);
+            }
+            return null;
+        });
+    }
+}
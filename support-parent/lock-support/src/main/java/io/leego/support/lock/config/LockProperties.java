@@ -0,0 +1,70 @@
+package io.leego.support.lock.config;
+
+import io.leego.support.lock.RedisDistributedAccessor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author Leego Yih
+ */
+@ConfigurationProperties("lock")
+public class LockProperties {
+    private boolean enabled = true;
+    /** The prefix of the keys of locks. */
+    private String prefix = "lock";
+    /** The number of threads renewing locks. */
+    private int poolSize = 1;
+    /** Whether to notify the waiters of locks once released, instead of only retrying with backoff. */
+    private boolean notifiable = true;
+    /** The channel which the released locks are published to. */
+    private String channel = RedisDistributedAccessor.DEFAULT_CHANNEL;
+    /** The maximum number of consecutive handoffs of a lock between the threads of this process, 0 means the locks are not coalesced. */
+    private int maxHandoffs = 0;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public boolean isNotifiable() {
+        return notifiable;
+    }
+
+    public void setNotifiable(boolean notifiable) {
+        this.notifiable = notifiable;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public int getMaxHandoffs() {
+        return maxHandoffs;
+    }
+
+    public void setMaxHandoffs(int maxHandoffs) {
+        this.maxHandoffs = maxHandoffs;
+    }
+}
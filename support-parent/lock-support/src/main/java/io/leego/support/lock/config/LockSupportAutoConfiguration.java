@@ -0,0 +1,74 @@
+package io.leego.support.lock.config;
+
+import io.leego.commons.lock.DistributedAccessor;
+import io.leego.commons.lock.DistributedLockFactory;
+import io.leego.commons.lock.LeaseWatchdog;
+import io.leego.support.lock.RedisDistributedAccessor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * @author Leego Yih
+ */
+@AutoConfiguration(after = RedisAutoConfiguration.class)
+@ConditionalOnProperty(value = "lock.enabled", matchIfMissing = true)
+@EnableConfigurationProperties(LockProperties.class)
+public class LockSupportAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(RedisConnectionFactory.class)
+    @ConditionalOnProperty(value = "lock.notifiable", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(StringRedisTemplate.class)
+    public DistributedAccessor distributedAccessor(StringRedisTemplate stringRedisTemplate,
+                                                   ObjectProvider<RedisMessageListenerContainer> redisMessageListenerContainer,
+                                                   LockProperties properties) {
+        RedisMessageListenerContainer container = properties.isNotifiable() ? redisMessageListenerContainer.getIfAvailable() : null;
+        return new RedisDistributedAccessor(stringRedisTemplate, container, properties.getChannel());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = "lockRenewalExecutor")
+    @ConditionalOnBean(DistributedAccessor.class)
+    public ScheduledExecutorService lockRenewalExecutor(LockProperties properties) {
+        return Executors.newScheduledThreadPool(properties.getPoolSize(),
+                Thread.ofPlatform().name("lock-renewal-", 0).daemon().factory());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(DistributedAccessor.class)
+    public LeaseWatchdog leaseWatchdog(@Qualifier("lockRenewalExecutor") ScheduledExecutorService lockRenewalExecutor,
+                                       DistributedAccessor distributedAccessor) {
+        return new LeaseWatchdog(lockRenewalExecutor, distributedAccessor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(DistributedAccessor.class)
+    public DistributedLockFactory distributedLockFactory(LeaseWatchdog leaseWatchdog, DistributedAccessor distributedAccessor, LockProperties properties) {
+        return new DistributedLockFactory(leaseWatchdog, distributedAccessor, properties.getPrefix(), properties.getMaxHandoffs());
+    }
+
+}
@@ -0,0 +1,183 @@
+package io.leego.support.lock;
+
+import io.leego.commons.lock.NotifiableDistributedAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against a Redis container, and is skipped if Docker is not available.
+ *
+ * @author Leego Yih
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisDistributedAccessorTest {
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisMessageListenerContainer listenerContainer;
+    private static StringRedisTemplate redisTemplate;
+    private static RedisDistributedAccessor accessor;
+
+    @BeforeAll
+    static void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        accessor = new RedisDistributedAccessor(redisTemplate, listenerContainer);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        listenerContainer.destroy();
+        connectionFactory.destroy();
+    }
+
+    @AfterEach
+    void flush() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void setIfAbsent() throws InterruptedException {
+        assertTrue(accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS));
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+        Thread.sleep(200);
+        assertTrue(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expire() throws InterruptedException {
+        assertFalse(accessor.expire("key", 1, TimeUnit.SECONDS));
+        accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS);
+        assertTrue(accessor.expire("key", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expireWithValue() throws InterruptedException {
+        assertFalse(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        accessor.setIfAbsent("key", "a", 100, TimeUnit.MILLISECONDS);
+        assertFalse(accessor.expire("key", "b", 1, TimeUnit.SECONDS));
+        assertTrue(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertFalse(accessor.setIfAbsent("key", "b", 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void expireInBatch() {
+        accessor.setIfAbsent("key1", "a", 1, TimeUnit.SECONDS);
+        accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("key1", "a");
+        entries.put("key2", "a");
+        entries.put("key3", "a");
+        Map<String, Boolean> results = accessor.expire(entries, 1, TimeUnit.SECONDS);
+        assertEquals(Map.of("key1", true, "key2", false, "key3", false), results);
+    }
+
+    @Test
+    void expireInBatchAfterScriptFlush() {
+        accessor.setIfAbsent("key1", "a", 1, TimeUnit.SECONDS);
+        accessor.expire(Map.of("key1", "a"), 1, TimeUnit.SECONDS);
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+        // Falls back to expiring one by one, which loads the script again.
+        assertEquals(Map.of("key1", true), accessor.expire(Map.of("key1", "a"), 1, TimeUnit.SECONDS));
+        assertEquals(Map.of("key1", true), accessor.expire(Map.of("key1", "a"), 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void delete() {
+        accessor.setIfAbsent("key", "a", 1, TimeUnit.SECONDS);
+        assertFalse(accessor.delete("key", "b"));
+        assertTrue(accessor.delete("key", "a"));
+        assertFalse(accessor.delete("key", "a"));
+        assertTrue(accessor.setIfAbsent("key", "b", 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void subscribe() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        NotifiableDistributedAccessor.Subscription subscription = accessor.subscribe("key", latch::countDown);
+        try {
+            accessor.setIfAbsent("key", "a", 1, TimeUnit.SECONDS);
+            accessor.delete("key", "a");
+            assertTrue(latch.await(1, TimeUnit.SECONDS));
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    @Test
+    void acquireShared() {
+        assertEquals(1, accessor.acquire("key", "a", true, 1, TimeUnit.SECONDS));
+        assertEquals(1, accessor.acquire("key", "b", true, 1, TimeUnit.SECONDS));
+        assertEquals(2, accessor.acquire("key", "a", true, 1, TimeUnit.SECONDS));
+        assertEquals(0, accessor.acquire("key", "c", false, 1, TimeUnit.SECONDS));
+        // The refused exclusive hold keeps new owners out.
+        assertEquals(0, accessor.acquire("key", "d", true, 1, TimeUnit.SECONDS));
+        assertEquals(1, accessor.release("key", "a"));
+        assertEquals(0, accessor.release("key", "a"));
+        assertEquals(0, accessor.release("key", "b"));
+        assertEquals(1, accessor.acquire("key", "c", false, 1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void acquireExclusive() throws InterruptedException {
+        assertEquals(1, accessor.acquire("key", "a", false, 100, TimeUnit.MILLISECONDS));
+        assertEquals(2, accessor.acquire("key", "a", true, 100, TimeUnit.MILLISECONDS));
+        assertEquals(0, accessor.acquire("key", "b", true, 100, TimeUnit.MILLISECONDS));
+        assertEquals(-1, accessor.release("key", "b"));
+        assertTrue(accessor.expire("key", "a", 1, TimeUnit.SECONDS));
+        assertFalse(accessor.expire("key", "b", 1, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(0, accessor.acquire("key", "b", false, 100, TimeUnit.MILLISECONDS));
+        Thread.sleep(1000);
+        // The hold of a crashed owner expires on its own.
+        assertEquals(1, accessor.acquire("key", "b", false, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void acquireExcludesSetIfAbsent() {
+        accessor.setIfAbsent("key1", "a", 1, TimeUnit.SECONDS);
+        assertEquals(0, accessor.acquire("key1", "a", false, 1, TimeUnit.SECONDS));
+        assertEquals(0, accessor.acquire("key1", "b", true, 1, TimeUnit.SECONDS));
+        assertEquals(-1, accessor.release("key1", "a"));
+        assertTrue(accessor.delete("key1", "a"));
+        assertEquals(1, accessor.acquire("key2", "a", true, 1, TimeUnit.SECONDS));
+        assertFalse(accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS));
+        assertFalse(accessor.delete("key2", "a"));
+        assertEquals(0, accessor.release("key2", "a"));
+        assertTrue(accessor.setIfAbsent("key2", "b", 1, TimeUnit.SECONDS));
+    }
+}